@@ -0,0 +1,46 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compute the page ranks of a graph both with every page updated in every step
+ * and adaptively, and compare the number of page updates, the time and the
+ * ranks of the two. The adaptive computation only saves work if it takes
+ * fewer updates than the plain one, its steps alone do not tell.
+ *
+ * Usage: java AdaptiveRankComparison graphFile [epsilon ...]
+ */
+public class AdaptiveRankComparison {
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java AdaptiveRankComparison graphFile [epsilon ...]");
+			return;
+		}
+		String fileName = args[0];
+		GraphLoader loader = new GraphLoader(fileName, Runtime.getRuntime().availableProcessors());
+		loader.load();
+		String[] vertices = loader.vertices();
+		String[] epsilons = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+				: new String[] { "0.01", "0.001", "0.0001" };
+		StringBuilder summary = new StringBuilder();
+		for (String value : epsilons) {
+			double epsilon = Double.parseDouble(value);
+			long startTime = System.nanoTime();
+			PageRank plain = new PageRank(fileName, epsilon, VertexOrdering.Strategy.NONE, false);
+			long plainTime = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			PageRank adaptive = new PageRank(fileName, epsilon, VertexOrdering.Strategy.NONE, true);
+			long adaptiveTime = System.nanoTime() - startTime;
+			double difference = 0;
+			for (String vertex : vertices) {
+				difference += Math.abs(plain.pageRankOf(vertex) - adaptive.pageRankOf(vertex));
+			}
+			summary.append(String.format(
+					"epsilon %g: plain %d steps, %d updates, %d ms; adaptive %d steps, %d updates"
+							+ " (%.1f%% of plain), %d ms; L1 difference %.2e%n",
+					epsilon, plain.numSteps(), plain.numUpdates(), plainTime / 1000000, adaptive.numSteps(),
+					adaptive.numUpdates(), 100.0 * adaptive.numUpdates() / plain.numUpdates(),
+					adaptiveTime / 1000000, difference));
+		}
+		System.out.print(summary);
+	}
+}
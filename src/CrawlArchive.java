@@ -0,0 +1,249 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A WARC-like archive of fetched responses. Every response is one gzip member
+ * appended to the archive file, holding a header block and the body:
+ *
+ * <pre>
+ * WARC/1.0
+ * WARC-Target-URI: https://en.wikipedia.org/wiki/Tennis
+ * HTTP-Status: 200
+ * Content-Type: text/html; charset=UTF-8       (response headers)
+ * Content-Length: 123456                       (length of the body)
+ *
+ * body
+ * </pre>
+ *
+ * The index file "ArchiveFileName.idx" has one line "offset length url" per
+ * response, so that a response is read with one positioned read and one
+ * decompression. Both files are appended after every response, so an
+ * interrupted crawl still leaves a usable archive.
+ */
+public class CrawlArchive {
+
+	private String fileName;
+	private RandomAccessFile file;
+	private PrintWriter indexWriter;
+	/* <url, {offset, length}> */
+	private HashMap<String, long[]> index;
+
+	/**
+	 * A recorded response.
+	 */
+	public static class Record {
+		private String url;
+		private int status;
+		private List<String> headers;
+		private byte[] body;
+
+		/**
+		 * @param url
+		 *            absolute address that was fetched
+		 * @param status
+		 *            HTTP status code
+		 * @param headers
+		 *            response headers as "Name: value" lines
+		 * @param body
+		 */
+		public Record(String url, int status, List<String> headers, byte[] body) {
+			this.url = url;
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		public String url() {
+			return url;
+		}
+
+		public int status() {
+			return status;
+		}
+
+		public List<String> headers() {
+			return headers;
+		}
+
+		public byte[] body() {
+			return body;
+		}
+	}
+
+	/**
+	 * Open an archive. If it exists its index is read; new records are
+	 * appended only if the archive is opened for writing.
+	 *
+	 * @param fileName
+	 *            name of the archive file
+	 * @param writable
+	 *            true to record into the archive
+	 * @throws IOException
+	 */
+	public CrawlArchive(String fileName, boolean writable) throws IOException {
+		this.fileName = fileName;
+		this.index = new HashMap<String, long[]>();
+		File archiveFile = new File(fileName);
+		if (!writable && !archiveFile.exists()) {
+			throw new FileNotFoundException(fileName);
+		}
+		readIndex();
+		this.file = new RandomAccessFile(archiveFile, writable ? "rw" : "r");
+		if (writable) {
+			this.indexWriter = new PrintWriter(new FileWriter(indexFileName(), StandardCharsets.UTF_8, true));
+		}
+	}
+
+	private String indexFileName() {
+		return fileName + ".idx";
+	}
+
+	private void readIndex() throws IOException {
+		File indexFile = new File(indexFileName());
+		if (!indexFile.exists()) {
+			return;
+		}
+		BufferedReader br = new BufferedReader(new FileReader(indexFile, StandardCharsets.UTF_8));
+		String line = br.readLine();
+		while (line != null) {
+			String[] fields = line.split(" ", 3);
+			if (fields.length == 3) {
+				index.put(fields[2], new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]) });
+			}
+			line = br.readLine();
+		}
+		br.close();
+	}
+
+	/**
+	 * @return number of recorded responses
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * @param url
+	 * @return true if a response for the given address is recorded
+	 */
+	public synchronized boolean contains(String url) {
+		return index.containsKey(url);
+	}
+
+	/**
+	 * Append a response to the archive and the index.
+	 *
+	 * @param record
+	 * @throws IOException
+	 */
+	public synchronized void append(Record record) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.body.length / 3 + 256);
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		StringBuilder sb = new StringBuilder();
+		sb.append("WARC/1.0\r\n");
+		sb.append("WARC-Target-URI: ").append(record.url).append("\r\n");
+		sb.append("HTTP-Status: ").append(record.status).append("\r\n");
+		for (String header : record.headers) {
+			if (!header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+				sb.append(header).append("\r\n");
+			}
+		}
+		sb.append("Content-Length: ").append(record.body.length).append("\r\n\r\n");
+		gzip.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+		gzip.write(record.body);
+		gzip.close();
+		long offset = file.length();
+		file.seek(offset);
+		file.write(bytes.toByteArray());
+		indexWriter.println(offset + " " + bytes.size() + " " + record.url);
+		indexWriter.flush();
+		index.put(record.url, new long[] { offset, bytes.size() });
+	}
+
+	/**
+	 * Read the response recorded for the given address.
+	 *
+	 * @param url
+	 * @return the record, or null if the address was not recorded
+	 * @throws IOException
+	 */
+	public Record read(String url) throws IOException {
+		long[] position;
+		byte[] compressed;
+		synchronized (this) {
+			position = index.get(url);
+			if (position == null) {
+				return null;
+			}
+			compressed = new byte[(int) position[1]];
+			file.seek(position[0]);
+			file.readFully(compressed);
+		}
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), 1 << 16);
+		int status = 0;
+		int contentLength = -1;
+		List<String> headers = new ArrayList<String>();
+		String line = readLine(in);
+		while (line != null && !line.isEmpty()) {
+			if (line.startsWith("HTTP-Status: ")) {
+				status = Integer.parseInt(line.substring(13).trim());
+			} else if (line.startsWith("Content-Length: ")) {
+				contentLength = Integer.parseInt(line.substring(16).trim());
+			} else if (!line.startsWith("WARC")) {
+				headers.add(line);
+			}
+			line = readLine(in);
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(contentLength, 32));
+		byte[] buffer = new byte[1 << 16];
+		int length = in.read(buffer);
+		while (length > 0) {
+			body.write(buffer, 0, length);
+			length = in.read(buffer);
+		}
+		in.close();
+		return new Record(url, status, headers, body.toByteArray());
+	}
+
+	/**
+	 * Read one header line ending with CRLF.
+	 *
+	 * @return the line, or null at the end of the stream
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b = in.read();
+		if (b < 0) {
+			return null;
+		}
+		while (b >= 0 && b != '\n') {
+			if (b != '\r') {
+				line.write(b);
+			}
+			b = in.read();
+		}
+		return new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public synchronized void close() throws IOException {
+		file.close();
+		if (indexWriter != null) {
+			indexWriter.close();
+		}
+	}
+}
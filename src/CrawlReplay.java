@@ -0,0 +1,35 @@
+import java.io.IOException;
+
+/**
+ * Run the tennis crawl of {@link WikiTennisCrawler} against a recorded archive.
+ * In record mode the crawl goes to the live site and every response is added
+ * to the archive; in replay mode the same crawl is served from the archive,
+ * with an optional delay per request in milliseconds, so crawler changes can
+ * be timed offline on exactly the same pages.
+ * 
+ * Usage: java CrawlReplay record|replay archiveFile [latency]
+ */
+public class CrawlReplay {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || !(args[0].equals("record") || args[0].equals("replay"))) {
+			System.err.println("Usage: java CrawlReplay record|replay archiveFile [latency]");
+			return;
+		}
+		boolean record = args[0].equals("record");
+		CrawlArchive archive = new CrawlArchive(args[1], record);
+		PageFetcher fetcher;
+		if (record) {
+			fetcher = new RecordingPageFetcher(archive);
+		} else {
+			fetcher = new ReplayPageFetcher(archive, args.length > 2 ? Long.parseLong(args[2]) : 0);
+		}
+		long startTime = System.currentTimeMillis();
+		String[] keywords = { "tennis", "grand slam" };
+		WikiCrawler tennisCrawler = new WikiCrawler("/wiki/Tennis", keywords, 1000, "WikiTennisGraph.txt", fetcher);
+		tennisCrawler.crawl();
+		long usedTime = System.currentTimeMillis() - startTime;
+		System.out.println("The crawl took " + usedTime + " ms; the archive has " + archive.size() + " responses.");
+		archive.close();
+	}
+}
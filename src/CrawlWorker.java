@@ -0,0 +1,570 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One worker process of {@link DistributedCrawler}. The pages are partitioned
+ * across the workers by the hash of their canonical title; a worker decides
+ * which of its own pages are about the topics and extracts their links.
+ *
+ * Every extracted link is written with its source page to the edge file of the
+ * worker, and sent to the worker owning it as a candidate page; the links of a
+ * page for other workers are sent in one batch per worker over TCP. The
+ * owner checks each candidate once. A page about the topics is only collected
+ * after the coordinator granted it one of the max pages, so the whole crawl
+ * never collects more than max pages. A candidate that is a redirect is sent
+ * on to the owner of its target.
+ *
+ * The coordinator probes the workers to detect the end of the crawl, then
+ * stops them and merges their edge files. Every worker reports whether it is
+ * idle and how many batches it sent and received.
+ *
+ * Usage: java CrawlWorker coordinatorHost coordinatorPort
+ */
+public class CrawlWorker {
+
+	/* Messages between the coordinator and the workers */
+	static final byte REQUEST = 1; // worker asks for pages: count
+	static final byte GRANT = 2; // coordinator grants pages: count
+	static final byte FULL = 3; // coordinator: all max pages are granted
+	static final byte PROBE = 4; // coordinator asks for the status
+	static final byte STATUS = 5; // worker: idle, batches sent and received
+	static final byte STOP = 6; // coordinator stops the crawl
+	static final byte DONE = 7; // worker: its collected pages
+	/* Links sent to another worker at once */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * A message of the coordinator or a batch of links of a peer.
+	 */
+	private static class Message {
+		private byte type;
+		private int count;
+		private String[] links;
+
+		private Message(byte type, int count, String[] links) {
+			this.type = type;
+			this.count = count;
+			this.links = links;
+		}
+	}
+
+	private Socket coordinator;
+	private DataInputStream fromCoordinator;
+	private DataOutputStream toCoordinator;
+	private ServerSocket peerServer;
+	private DataOutputStream[] toPeers;
+	private BlockingQueue<Message> inbox;
+
+	private int workerId;
+	private int numOfWorkers;
+	private String baseUrl;
+	private String fileName;
+	private String[] keywords;
+	private HashSet<String> disallowedSites;
+	private TitleResolver resolver;
+	private PageFetcher fetcher;
+	/* waits 5 seconds after every 100 requests to the real wiki */
+	private boolean polite;
+
+	/* owned links that were ever candidates */
+	private HashSet<String> seenSet;
+	/* owned links to check */
+	private Queue<String> candidates;
+	/* owned links about the topics, waiting for a grant */
+	private LinkedList<String> pending;
+	private int numOfRequested = 0;
+	private boolean full = false;
+	private LinkedList<String> visitedList;
+	private Queue<String> waitingQ;
+	/* links already sent to other workers */
+	private HashSet<String> sentSet;
+	private ArrayList<String>[] batches;
+	private long numOfSent = 0;
+	private long numOfReceived = 0;
+	private PrintWriter edgeWriter;
+	private int requestsCount = 0;
+	private boolean stopped = false;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 2) {
+			System.err.println("Usage: java CrawlWorker coordinatorHost coordinatorPort");
+			return;
+		}
+		CrawlWorker worker = new CrawlWorker(args[0], Integer.parseInt(args[1]));
+		worker.run();
+	}
+
+	/**
+	 * Connect to the coordinator, receive the crawl and connect to the peers.
+	 *
+	 * @param host
+	 *            host of the coordinator
+	 * @param port
+	 *            port of the coordinator
+	 * @throws IOException
+	 */
+	public CrawlWorker(String host, int port) throws IOException {
+		peerServer = new ServerSocket(0);
+		coordinator = new Socket(host, port);
+		coordinator.setTcpNoDelay(true);
+		fromCoordinator = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+		toCoordinator = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+		toCoordinator.writeInt(peerServer.getLocalPort());
+		toCoordinator.flush();
+
+		workerId = fromCoordinator.readInt();
+		numOfWorkers = fromCoordinator.readInt();
+		baseUrl = fromCoordinator.readUTF();
+		fileName = fromCoordinator.readUTF();
+		String seedUrl = fromCoordinator.readUTF();
+		keywords = new String[fromCoordinator.readInt()];
+		for (int i = 0; i < keywords.length; i++) {
+			keywords[i] = fromCoordinator.readUTF();
+		}
+		String[] hosts = new String[numOfWorkers];
+		int[] ports = new int[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			hosts[q] = fromCoordinator.readUTF();
+			ports[q] = fromCoordinator.readInt();
+		}
+
+		fetcher = new HttpPageFetcher();
+		polite = baseUrl.equals(WikiCrawler.BASE_URL);
+		resolver = new TitleResolver();
+		resolver.loadRedirects(WikiCrawler.redirectsFileName(fileName));
+		inbox = new LinkedBlockingQueue<Message>();
+		seenSet = new HashSet<String>();
+		candidates = new LinkedList<String>();
+		pending = new LinkedList<String>();
+		visitedList = new LinkedList<String>();
+		waitingQ = new LinkedList<String>();
+		sentSet = new HashSet<String>();
+		edgeWriter = new PrintWriter(new BufferedWriter(
+				new FileWriter(edgesFileName(fileName, workerId), StandardCharsets.UTF_8), EdgeBlocks.BUFFER_SIZE));
+		disallowedSites = getDisallowedSites();
+		openPeers(hosts, ports);
+		Thread reader = new Thread(() -> readCoordinator());
+		reader.setDaemon(true);
+		reader.start();
+		if (ownerOf(seedUrl, numOfWorkers) == workerId) {
+			addCandidate(seedUrl);
+		}
+	}
+
+	/**
+	 * @param fileName
+	 *            name of the graph file
+	 * @param workerId
+	 * @return name of the file the given worker writes its edges to
+	 */
+	static String edgesFileName(String fileName, int workerId) {
+		return "Worker" + workerId + "_" + fileName;
+	}
+
+	/**
+	 * @param url
+	 *            canonical relative address
+	 * @param numOfWorkers
+	 * @return the worker owning the given page
+	 */
+	static int ownerOf(String url, int numOfWorkers) {
+		int h = url.hashCode();
+		h ^= h >>> 16;
+		return (h & 0x7FFFFFFF) % numOfWorkers;
+	}
+
+	/**
+	 * Crawl until the coordinator stops the crawl. Messages are handled before
+	 * any other work; candidates are checked before pages are extracted, so
+	 * grants are asked for as early as possible.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run() throws IOException, InterruptedException {
+		while (!stopped) {
+			Message message = inbox.poll();
+			if (message == null) {
+				if (!candidates.isEmpty()) {
+					checkCandidate(candidates.poll());
+					continue;
+				}
+				if (!waitingQ.isEmpty()) {
+					extractLinks(waitingQ.poll());
+					// the links of a page are one batch per owner, so owners never wait for full batches
+					sendBatches();
+					continue;
+				}
+				sendBatches();
+				requestPages();
+				message = inbox.take();
+			}
+			handle(message);
+		}
+		finish();
+	}
+
+	private void handle(Message message) throws IOException {
+		switch (message.type) {
+		case GRANT:
+			for (int i = 0; i < message.count; i++) {
+				String url = pending.poll();
+				visitedList.add(url);
+				waitingQ.add(url);
+			}
+			if (message.count < numOfRequested) {
+				// the other max pages are granted already
+				full = true;
+				pending.clear();
+				candidates.clear();
+			}
+			numOfRequested = 0;
+			break;
+		case FULL:
+			full = true;
+			candidates.clear();
+			break;
+		case PROBE:
+			boolean idle = candidates.isEmpty() && waitingQ.isEmpty() && pending.isEmpty() && numOfRequested == 0
+					&& batchesEmpty();
+			synchronized (toCoordinator) {
+				toCoordinator.writeByte(STATUS);
+				toCoordinator.writeBoolean(idle);
+				toCoordinator.writeLong(numOfSent);
+				toCoordinator.writeLong(numOfReceived);
+				toCoordinator.flush();
+			}
+			break;
+		case STOP:
+			stopped = true;
+			break;
+		default:
+			// a batch of candidate links of a peer
+			numOfReceived++;
+			for (String link : message.links) {
+				addCandidate(link);
+			}
+		}
+	}
+
+	/**
+	 * Ask the coordinator to grant the pending pages, unless a request is
+	 * already waiting for its grant.
+	 *
+	 * @throws IOException
+	 */
+	private void requestPages() throws IOException {
+		if (pending.isEmpty() || numOfRequested > 0) {
+			return;
+		}
+		numOfRequested = pending.size();
+		synchronized (toCoordinator) {
+			toCoordinator.writeByte(REQUEST);
+			toCoordinator.writeInt(numOfRequested);
+			toCoordinator.flush();
+		}
+	}
+
+	private void addCandidate(String link) {
+		if (!full && seenSet.add(link)) {
+			candidates.add(link);
+		}
+	}
+
+	/**
+	 * Send the given canonical link to its owner as a candidate page.
+	 *
+	 * @param link
+	 * @throws IOException
+	 */
+	private void route(String link) throws IOException {
+		if (full) {
+			return;
+		}
+		int owner = ownerOf(link, numOfWorkers);
+		if (owner == workerId) {
+			addCandidate(link);
+		} else if (sentSet.add(link)) {
+			batches[owner].add(link);
+			if (batches[owner].size() >= BATCH_SIZE) {
+				sendBatch(owner);
+			}
+		}
+	}
+
+	private void sendBatches() throws IOException {
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId && !batches[q].isEmpty()) {
+				sendBatch(q);
+			}
+		}
+	}
+
+	private boolean batchesEmpty() {
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId && !batches[q].isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void sendBatch(int q) throws IOException {
+		toPeers[q].writeInt(batches[q].size());
+		for (String link : batches[q]) {
+			toPeers[q].writeUTF(link);
+		}
+		toPeers[q].flush();
+		batches[q].clear();
+		numOfSent++;
+	}
+
+	/**
+	 * Check whether the given owned page contains all key words. A page about
+	 * the topics waits for a grant; a redirect is sent on to the owner of its
+	 * target.
+	 *
+	 * @param url
+	 * @throws IOException
+	 */
+	private void checkCandidate(String url) throws IOException {
+		if (!isAboutTopics(url)) {
+			if (resolver.isRedirect(url)) {
+				String target = resolver.canonical(url);
+				if (!target.equals(url) && isValidPage(target)) {
+					route(target);
+				}
+			}
+			return;
+		}
+		pending.add(url);
+		if (pending.size() >= BATCH_SIZE) {
+			requestPages();
+		}
+	}
+
+	/**
+	 * Check whether the given link is a valid link (links contains "#" and ":"
+	 * are either links to images or links to sections of other pages; and
+	 * should not crawl any site that is disallowed by robots.txt).
+	 *
+	 * @param url
+	 * @return true if it's a valid page, false else
+	 */
+	private boolean isValidPage(String url) {
+		return url.startsWith("/wiki/") && WikiCrawler.isValidPage(url, disallowedSites);
+	}
+
+	/**
+	 * Wait for 5 seconds after every 100 requests to the wiki.
+	 */
+	private void waitForLiveSite() {
+		if (polite && requestsCount % 100 == 0) {
+			try {
+				System.out.println("Worker " + workerId + " is waiting 5 seconds after every 100 requests......");
+				Thread.sleep(5000);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Read the robots.txt file and add disallowed sites to a hashset
+	 *
+	 * @return the hashset
+	 */
+	private HashSet<String> getDisallowedSites() {
+		HashSet<String> sites = new HashSet<String>();
+		try {
+			BufferedReader br = WikiCrawler.readerOf(fetcher, WikiCrawler.absoluteAddress(baseUrl, "/robots.txt"));
+			requestsCount++;
+			sites = WikiCrawler.disallowedSitesOf(br);
+			br.close();
+		} catch (IOException e) {
+			System.err.println("Worker " + workerId + " failed to get disallowed sites from robots.txt: "
+					+ e.getMessage());
+		}
+		return sites;
+	}
+
+	/**
+	 * Extract the links from actual text component of the given collected
+	 * page, write them as edges and send them to their owners.
+	 *
+	 * @param url
+	 * @throws IOException
+	 */
+	private void extractLinks(String url) throws IOException {
+		HashSet<String> edgeSet = new HashSet<String>();
+		waitForLiveSite();
+		try {
+			BufferedReader br = WikiCrawler.readerOf(fetcher, WikiCrawler.absoluteAddress(baseUrl, url));
+			requestsCount++;
+			ArrayList<String> links = WikiCrawler.linksOf(br);
+			br.close();
+			for (String s : links) {
+				String link = resolver.canonical(s);
+				if (!link.equals(url) && isValidPage(link) && edgeSet.add(link)) {
+					edgeWriter.println(url + " " + link);
+					route(link);
+				}
+			}
+		} catch (MalformedURLException e) {
+			System.err.println("Bad url: " + url);
+		} catch (IOException e) {
+			System.err.println("Failed to oepn url stream: " + url);
+		}
+	}
+
+	/**
+	 * Check whether given url contains all key words. If the page is a
+	 * redirect, the redirect is cached and false is returned.
+	 *
+	 * @param url
+	 * @return true if given url contains all key words; false otherwise
+	 */
+	private boolean isAboutTopics(String url) {
+		waitForLiveSite();
+		try {
+			BufferedReader br = WikiCrawler.readerOf(fetcher, WikiCrawler.textPageAddress(baseUrl, url));
+			requestsCount++;
+			String line = br.readLine();
+			if (resolver.learnRedirect(url, line)) {
+				br.close();
+				return false;
+			}
+			BitSet found = WikiCrawler.keywordsIn(line, br, keywords);
+			br.close();
+			return found.cardinality() == keywords.length;
+		} catch (IOException e) {
+			System.err.println("Failed to open url in stream: " + url + ". Skipped.");
+			return false;
+		}
+	}
+
+	/**
+	 * Open a connection to every peer and accept one from every peer. Each
+	 * incoming connection gets a thread that puts the batches of that peer in
+	 * the inbox.
+	 *
+	 * @param hosts
+	 * @param ports
+	 * @throws IOException
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void openPeers(String[] hosts, int[] ports) throws IOException {
+		batches = new ArrayList[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			batches[q] = new ArrayList<String>();
+		}
+		Thread acceptor = new Thread(() -> {
+			try {
+				for (int i = 0; i < numOfWorkers - 1; i++) {
+					Socket socket = peerServer.accept();
+					Thread reader = new Thread(() -> readPeer(socket));
+					reader.setDaemon(true);
+					reader.start();
+				}
+			} catch (IOException e) {
+				System.err.println("Worker " + workerId + " failed to accept a peer: " + e.getMessage());
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		toPeers = new DataOutputStream[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId) {
+				Socket socket = new Socket(hosts[q], ports[q]);
+				socket.setTcpNoDelay(true);
+				toPeers[q] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+			}
+		}
+	}
+
+	/**
+	 * Read the batches of one peer until it closes the connection.
+	 *
+	 * @param socket
+	 */
+	private void readPeer(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			while (true) {
+				String[] links = new String[in.readInt()];
+				for (int i = 0; i < links.length; i++) {
+					links[i] = in.readUTF();
+				}
+				inbox.put(new Message((byte) 0, links.length, links));
+			}
+		} catch (EOFException e) {
+			// the peer is done
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Worker " + workerId + " lost a peer: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Read the messages of the coordinator until it stops the crawl.
+	 */
+	private void readCoordinator() {
+		try {
+			while (true) {
+				byte type = fromCoordinator.readByte();
+				int count = type == GRANT ? fromCoordinator.readInt() : 0;
+				inbox.put(new Message(type, count, null));
+				if (type == STOP) {
+					return;
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Worker " + workerId + " lost the coordinator: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Close the edge file, write the redirects and send the collected pages to
+	 * the coordinator.
+	 *
+	 * @throws IOException
+	 */
+	private void finish() throws IOException {
+		edgeWriter.close();
+		resolver.outputRedirects(WikiCrawler.redirectsFileName(edgesFileName(fileName, workerId)));
+		synchronized (toCoordinator) {
+			toCoordinator.writeByte(DONE);
+			toCoordinator.writeInt(requestsCount);
+			toCoordinator.writeInt(visitedList.size());
+			for (String url : visitedList) {
+				toCoordinator.writeUTF(url);
+			}
+			toCoordinator.flush();
+		}
+		for (DataOutputStream out : toPeers) {
+			if (out != null) {
+				out.close();
+			}
+		}
+		coordinator.close();
+		peerServer.close();
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * The dense loops of a step of the random walk that {@link RankKernels} runs
+ * with the fastest implementation available: {@link ScalarRankKernels}, or
+ * VectorRankKernels (in src/vector) when the incubating Vector API module is
+ * on the module path.
+ */
+interface DenseRankKernels {
+
+	/**
+	 * @return short name of the implementation, like "scalar"
+	 */
+	String name();
+
+	/**
+	 * @see RankKernels#scaleContributions(double[], double[], double[])
+	 */
+	double scaleContributions(double[] pN, double[] scaledInverseDegrees, double[] contributions);
+
+	/**
+	 * @see RankKernels#gatherRanks(int[], int[], double[], double, double[],
+	 *      double[])
+	 */
+	double gatherRanks(int[] inOffsets, int[] inSources, double[] contributions, double defaultValue, double[] pN,
+			double[] pNPlusOne);
+}
@@ -0,0 +1,422 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Focused crawling like {@link WikiCrawler}, with the pages partitioned across
+ * several {@link CrawlWorker} processes by the hash of their title. The
+ * coordinator sends every worker the crawl, grants the max pages to the
+ * workers as they find pages about the topics, and detects the end of the
+ * crawl: it probes all workers repeatedly, and the crawl is over when two
+ * probes in a row find every worker idle with the same counts, and as many
+ * batches received as sent. It then stops the workers and merges their edge
+ * files into one graph file, keeping the edges between collected pages.
+ *
+ * The workers are either started by the coordinator as local JVMs, or started
+ * by hand with "java CrawlWorker coordinatorHost port" on any host sharing the
+ * working directory.
+ *
+ * Usage: java DistributedCrawler numOfWorkers max fileName [baseUrl]
+ */
+public class DistributedCrawler {
+
+	/* Milliseconds between probes of the workers */
+	private static final int PROBE_INTERVAL = 100;
+
+	private String seedUrl;
+	private String[] keywords;
+	private int max;
+	private String fileName;
+	private String baseUrl;
+	private int numOfWorkers;
+	private int port;
+	private boolean spawnWorkers;
+	private DataInputStream[] fromWorkers;
+	private DataOutputStream[] toWorkers;
+	private Process[] processes;
+	/* replies of every worker to the probes */
+	private BlockingQueue<long[]>[] statuses;
+	/* pages collected by every worker when it is done */
+	private BlockingQueue<String[]> collected;
+	private TitleResolver resolver;
+	private int numOfGranted = 0;
+	private int requestsCount = 0;
+	private int numOfEdges = 0;
+
+	/**
+	 * Crawl the tennis pages, or the pages of a stub wiki like
+	 * {@link StubWikiServer}.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: java DistributedCrawler numOfWorkers max fileName [baseUrl]");
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		String[] keywords = { "tennis", "grand slam" };
+		DistributedCrawler crawler = new DistributedCrawler("/wiki/Tennis", keywords, Integer.parseInt(args[1]),
+				args[2], Integer.parseInt(args[0]), args.length > 3 ? args[3] : WikiCrawler.BASE_URL);
+		crawler.crawl();
+		long usedTime = System.currentTimeMillis() - startTime;
+		System.out.println("My crawler took " + usedTime + " ms.");
+	}
+
+	/**
+	 * Crawl with the given number of worker JVMs started on this host.
+	 *
+	 * @param seedUrl
+	 *            relative address of the seed url
+	 * @param keywords
+	 *            contains key words that describe a topic
+	 * @param max
+	 *            representing Maximum number sites to be crawled
+	 * @param fileName
+	 *            name of the file the graph will be written to
+	 * @param numOfWorkers
+	 *            Number of worker processes.
+	 * @param baseUrl
+	 *            address of the wiki, like WikiCrawler.BASE_URL
+	 */
+	public DistributedCrawler(String seedUrl, String[] keywords, int max, String fileName, int numOfWorkers,
+			String baseUrl) {
+		this(seedUrl, keywords, max, fileName, numOfWorkers, baseUrl, 0, true);
+	}
+
+	/**
+	 * @param seedUrl
+	 *            relative address of the seed url
+	 * @param keywords
+	 *            contains key words that describe a topic
+	 * @param max
+	 *            representing Maximum number sites to be crawled
+	 * @param fileName
+	 *            name of the file the graph will be written to
+	 * @param numOfWorkers
+	 *            Number of worker processes.
+	 * @param baseUrl
+	 *            address of the wiki, like WikiCrawler.BASE_URL
+	 * @param port
+	 *            Port the workers connect to; 0 picks a free one.
+	 * @param spawnWorkers
+	 *            true to start the workers as local JVMs, false to wait for
+	 *            workers started by hand.
+	 */
+	public DistributedCrawler(String seedUrl, String[] keywords, int max, String fileName, int numOfWorkers,
+			String baseUrl, int port, boolean spawnWorkers) {
+		if (keywords == null || keywords.length == 0) {
+			throw new IllegalArgumentException("Key words can not be empty.");
+		}
+		if (max <= 0) {
+			throw new IllegalArgumentException("Maximum number sites to be crawled should be greater than 0.");
+		}
+		if (numOfWorkers <= 0) {
+			throw new IllegalArgumentException("Number of workers should be greater than 0.");
+		}
+		this.keywords = new String[keywords.length];
+		for (int i = 0; i < keywords.length; i++) {
+			this.keywords[i] = keywords[i].toLowerCase();
+		}
+		this.max = max;
+		this.fileName = fileName;
+		this.baseUrl = baseUrl;
+		this.numOfWorkers = numOfWorkers;
+		this.port = port;
+		this.spawnWorkers = spawnWorkers;
+		this.resolver = new TitleResolver();
+		resolver.loadRedirects(WikiCrawler.redirectsFileName(fileName));
+		this.seedUrl = resolver.canonical(seedUrl.trim());
+		if (!this.seedUrl.startsWith("/wiki/")) {
+			throw new IllegalArgumentException(seedUrl + " is not a valid wiki page.");
+		}
+	}
+
+	/**
+	 * Run the crawl on the workers and write the merged graph to fileName.
+	 *
+	 * @throws IOException
+	 */
+	public void crawl() throws IOException {
+		System.out.println("DistributedCrawler is crawling with " + numOfWorkers + " workers......");
+		ServerSocket server = new ServerSocket(port);
+		Socket[] workers;
+		try {
+			if (spawnWorkers) {
+				startWorkers(server.getLocalPort());
+			} else {
+				System.out.println("Waiting for " + numOfWorkers + " workers on port " + server.getLocalPort()
+						+ "......");
+			}
+			workers = acceptWorkers(server);
+		} finally {
+			server.close();
+		}
+		HashSet<String> vertices = new HashSet<String>();
+		try {
+			waitUntilIdle();
+			for (int p = 0; p < numOfWorkers; p++) {
+				send(p, CrawlWorker.STOP, 0);
+			}
+			for (int p = 0; p < numOfWorkers; p++) {
+				vertices.addAll(Arrays.asList(collected.take()));
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while crawling.", e);
+		} finally {
+			for (Socket worker : workers) {
+				worker.close();
+			}
+			waitForWorkers();
+		}
+		if (vertices.isEmpty()) {
+			System.err.println(seedUrl + " does not contain all keywords.");
+		}
+		mergeGraph(vertices);
+		resolver.outputRedirects(WikiCrawler.redirectsFileName(fileName));
+		System.out.println("The graph has " + numOfEdges + " edges and my crawler program sent requests to wiki "
+				+ requestsCount + " times.");
+		System.out.println(resolver.numOfRedirects() + " redirects were resolved to their canonical pages.");
+	}
+
+	/**
+	 * Start the workers as JVMs on this host with the same class path.
+	 *
+	 * @param port
+	 * @throws IOException
+	 */
+	private void startWorkers(int port) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classPath = System.getProperty("java.class.path");
+		processes = new Process[numOfWorkers];
+		for (int p = 0; p < numOfWorkers; p++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", classPath, "CrawlWorker", "localhost",
+					String.valueOf(port));
+			builder.inheritIO();
+			processes[p] = builder.start();
+		}
+	}
+
+	private void waitForWorkers() {
+		if (processes == null) {
+			return;
+		}
+		for (Process process : processes) {
+			try {
+				process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Accept every worker, send each the crawl and the addresses of its peers,
+	 * and start a thread reading the messages of each.
+	 *
+	 * @param server
+	 * @return the connections of the workers
+	 * @throws IOException
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Socket[] acceptWorkers(ServerSocket server) throws IOException {
+		Socket[] workers = new Socket[numOfWorkers];
+		fromWorkers = new DataInputStream[numOfWorkers];
+		toWorkers = new DataOutputStream[numOfWorkers];
+		statuses = new BlockingQueue[numOfWorkers];
+		collected = new ArrayBlockingQueue<String[]>(numOfWorkers);
+		String[] hosts = new String[numOfWorkers];
+		int[] ports = new int[numOfWorkers];
+		for (int p = 0; p < numOfWorkers; p++) {
+			workers[p] = server.accept();
+			workers[p].setTcpNoDelay(true);
+			fromWorkers[p] = new DataInputStream(new BufferedInputStream(workers[p].getInputStream()));
+			toWorkers[p] = new DataOutputStream(new BufferedOutputStream(workers[p].getOutputStream()));
+			statuses[p] = new ArrayBlockingQueue<long[]>(1);
+			hosts[p] = workers[p].getInetAddress().getHostAddress();
+			ports[p] = fromWorkers[p].readInt();
+		}
+		for (int p = 0; p < numOfWorkers; p++) {
+			DataOutputStream out = toWorkers[p];
+			out.writeInt(p);
+			out.writeInt(numOfWorkers);
+			out.writeUTF(baseUrl);
+			out.writeUTF(fileName);
+			out.writeUTF(seedUrl);
+			out.writeInt(keywords.length);
+			for (String keyword : keywords) {
+				out.writeUTF(keyword);
+			}
+			for (int q = 0; q < numOfWorkers; q++) {
+				out.writeUTF(hosts[q]);
+				out.writeInt(ports[q]);
+			}
+			out.flush();
+		}
+		for (int p = 0; p < numOfWorkers; p++) {
+			final int worker = p;
+			Thread reader = new Thread(() -> readWorker(worker));
+			reader.setDaemon(true);
+			reader.start();
+		}
+		return workers;
+	}
+
+	/**
+	 * Read the messages of one worker: grant its requests for pages, and pass
+	 * on its probe replies and its collected pages.
+	 *
+	 * @param p
+	 */
+	private void readWorker(int p) {
+		try {
+			while (true) {
+				byte type = fromWorkers[p].readByte();
+				if (type == CrawlWorker.REQUEST) {
+					grant(p, fromWorkers[p].readInt());
+				} else if (type == CrawlWorker.STATUS) {
+					long idle = fromWorkers[p].readBoolean() ? 1 : 0;
+					statuses[p].put(new long[] { idle, fromWorkers[p].readLong(), fromWorkers[p].readLong() });
+				} else if (type == CrawlWorker.DONE) {
+					int numOfRequests = fromWorkers[p].readInt();
+					String[] pages = new String[fromWorkers[p].readInt()];
+					for (int i = 0; i < pages.length; i++) {
+						pages[i] = fromWorkers[p].readUTF();
+					}
+					synchronized (this) {
+						requestsCount += numOfRequests;
+					}
+					collected.put(pages);
+					return;
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Lost worker " + p + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Grant as many of the requested pages as are left of max. When none are
+	 * left, every worker is told to stop checking candidates.
+	 *
+	 * @param p
+	 *            the requesting worker
+	 * @param numOfRequested
+	 * @throws IOException
+	 */
+	private synchronized void grant(int p, int numOfRequested) throws IOException {
+		int numOfGrants = Math.min(numOfRequested, max - numOfGranted);
+		numOfGranted += numOfGrants;
+		send(p, CrawlWorker.GRANT, numOfGrants);
+		if (numOfGrants > 0 && numOfGranted == max) {
+			for (int q = 0; q < numOfWorkers; q++) {
+				send(q, CrawlWorker.FULL, 0);
+			}
+		}
+	}
+
+	private void send(int p, byte type, int count) throws IOException {
+		synchronized (toWorkers[p]) {
+			toWorkers[p].writeByte(type);
+			if (type == CrawlWorker.GRANT) {
+				toWorkers[p].writeInt(count);
+			}
+			toWorkers[p].flush();
+		}
+	}
+
+	/**
+	 * Probe the workers until two probes in a row find all of them idle with
+	 * the same counts, and as many batches received as sent. Then no batch is
+	 * on its way and no worker has anything left to do.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void waitUntilIdle() throws IOException, InterruptedException {
+		long[] previous = null;
+		while (true) {
+			Thread.sleep(PROBE_INTERVAL);
+			for (int p = 0; p < numOfWorkers; p++) {
+				send(p, CrawlWorker.PROBE, 0);
+			}
+			boolean idle = true;
+			long numOfSent = 0;
+			long numOfReceived = 0;
+			long[] counts = new long[2 * numOfWorkers];
+			for (int p = 0; p < numOfWorkers; p++) {
+				long[] status = statuses[p].take();
+				idle = idle && status[0] == 1;
+				counts[2 * p] = status[1];
+				counts[2 * p + 1] = status[2];
+				numOfSent += status[1];
+				numOfReceived += status[2];
+			}
+			if (idle && numOfSent == numOfReceived && Arrays.equals(counts, previous)) {
+				return;
+			}
+			previous = idle ? counts : null;
+		}
+	}
+
+	/**
+	 * Merge the edge files of the workers into the graph file. Targets are
+	 * replaced by their canonical pages with the redirects learned by all
+	 * workers; only edges between collected pages are kept, once each.
+	 *
+	 * @param vertices
+	 *            the pages collected by all workers
+	 * @throws IOException
+	 */
+	private void mergeGraph(HashSet<String> vertices) throws IOException {
+		for (int p = 0; p < numOfWorkers; p++) {
+			String redirectsFile = WikiCrawler.redirectsFileName(CrawlWorker.edgesFileName(fileName, p));
+			resolver.loadRedirects(redirectsFile);
+			new File(redirectsFile).delete();
+		}
+		PrintWriter writer;
+		try {
+			writer = new PrintWriter(fileName, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		writer.println(max);
+		for (int p = 0; p < numOfWorkers; p++) {
+			File edgesFile = new File(CrawlWorker.edgesFileName(fileName, p));
+			BufferedReader br = new BufferedReader(new FileReader(edgesFile, StandardCharsets.UTF_8),
+					EdgeBlocks.BUFFER_SIZE);
+			String source = null;
+			HashSet<String> edgeSet = new HashSet<String>();
+			String line = br.readLine();
+			while (line != null) {
+				int space = line.indexOf(' ');
+				String s1 = line.substring(0, space);
+				String s2 = resolver.canonical(line.substring(space + 1));
+				if (!s1.equals(source)) {
+					source = s1;
+					edgeSet.clear();
+				}
+				if (vertices.contains(s2) && !s2.equals(s1) && edgeSet.add(s2)) {
+					writer.println(s1 + " " + s2);
+					numOfEdges++;
+				}
+				line = br.readLine();
+			}
+			br.close();
+			edgesFile.delete();
+		}
+		writer.close();
+	}
+}
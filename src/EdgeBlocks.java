@@ -0,0 +1,229 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class splits the text edge file of a graph into blocks on disk, block p
+ * holding the edges whose destination falls in the p-th range of vertex
+ * indexes. The edge file is read once; only the vertex dictionary and the out
+ * degrees are kept in memory.
+ *
+ * Blocks are stored as pairs of ints (source index, destination index) in the
+ * directory "Blocks_GraphFileName".
+ */
+public class EdgeBlocks {
+
+	/* Size of the buffers used to read and write the blocks */
+	public static final int BUFFER_SIZE = 1 << 20;
+	/* Number of vertices per block when the number of blocks is not given */
+	private static final int DEFAULT_VERTICES_PER_BLOCK = 1 << 20;
+
+	private String graphFileName;
+	private int numOfBlocks;
+	private int verticesPerBlock;
+	private File blocksDir;
+	private File[] blockFiles;
+	/* Used to check the index of given page */
+	private HashMap<String, Integer> verticesIndex;
+	/* Store the vertices/pages in an array */
+	private String[] verticesArray;
+	private int[] outDegrees;
+	private int numOfVertices;
+	private long numOfEdges;
+
+	/**
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param numOfBlocks
+	 *            Number of blocks the edges are split into; 0 chooses it from
+	 *            the number of vertices.
+	 * @throws IOException
+	 */
+	public EdgeBlocks(String fileName, int numOfBlocks) throws IOException {
+		if (numOfBlocks < 0) {
+			throw new IllegalArgumentException("Number of blocks can not be negative.");
+		}
+		this.graphFileName = fileName;
+		this.numOfBlocks = numOfBlocks;
+		this.verticesIndex = new HashMap<String, Integer>();
+		File binaryEdges = readGraph();
+		shardEdges(binaryEdges);
+	}
+
+	/**
+	 * @param url
+	 * @return index of the given vertex, or -1 if it is not in the graph
+	 */
+	public int indexOf(String url) {
+		Integer index = verticesIndex.get(url);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the vertices/pages by index
+	 */
+	public String[] vertices() {
+		return verticesArray;
+	}
+
+	/**
+	 * @return the out degrees of the vertices by index
+	 */
+	public int[] outDegrees() {
+		return outDegrees;
+	}
+
+	public int numVertices() {
+		return numOfVertices;
+	}
+
+	public long numEdges() {
+		return numOfEdges;
+	}
+
+	public int numBlocks() {
+		return numOfBlocks;
+	}
+
+	/**
+	 * @return number of vertices in each block, the last block may have fewer
+	 */
+	public int verticesPerBlock() {
+		return verticesPerBlock;
+	}
+
+	/**
+	 * @param p
+	 * @return the file of the p-th block
+	 */
+	public File blockFile(int p) {
+		return blockFiles[p];
+	}
+
+	/**
+	 * Remove the blocks from disk.
+	 */
+	public void delete() {
+		for (File block : blockFiles) {
+			block.delete();
+		}
+		blocksDir.delete();
+	}
+
+	/**
+	 * Read the text file that contains the edges of the graph once. Assign an
+	 * index to every vertex, count the out degrees and write the edges as
+	 * index pairs to a binary file.
+	 *
+	 * @return the binary edge file
+	 * @throws IOException
+	 */
+	private File readGraph() throws IOException {
+		blocksDir = new File("Blocks_" + graphFileName);
+		if (!blocksDir.isDirectory() && !blocksDir.mkdirs()) {
+			throw new IOException("Could not create directory " + blocksDir);
+		}
+		File binaryEdges = new File(blocksDir, "edges.bin");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryEdges),
+				BUFFER_SIZE));
+		BufferedReader br = new BufferedReader(new FileReader(graphFileName, StandardCharsets.UTF_8), BUFFER_SIZE);
+		int givenNumOfVertices = Integer.parseInt(br.readLine().trim());
+		int[] degrees = new int[Math.max(16, givenNumOfVertices)];
+		String line = br.readLine();
+		while (line != null) {
+			String[] links = line.split(" ");
+			if (links.length >= 2) {
+				int source = addVertex(links[0]);
+				int destination = addVertex(links[1]);
+				if (source >= degrees.length) {
+					degrees = Arrays.copyOf(degrees, Math.max(source + 1, degrees.length * 2));
+				}
+				degrees[source]++;
+				out.writeInt(source);
+				out.writeInt(destination);
+				numOfEdges++;
+			}
+			line = br.readLine();
+		}
+		br.close();
+		out.close();
+		numOfVertices = verticesIndex.size();
+		if (givenNumOfVertices != numOfVertices) {
+			System.err.println("Warning: Number of vertices is not consistant. Given: " + givenNumOfVertices
+					+ "; Real: " + numOfVertices);
+		}
+		outDegrees = Arrays.copyOf(degrees, numOfVertices);
+		verticesArray = new String[numOfVertices];
+		for (String key : verticesIndex.keySet()) {
+			verticesArray[verticesIndex.get(key)] = key;
+		}
+		return binaryEdges;
+	}
+
+	/**
+	 * @param vertex
+	 * @return index of the given vertex, a new one if it was not seen before
+	 */
+	private int addVertex(String vertex) {
+		Integer index = verticesIndex.get(vertex);
+		if (index == null) {
+			index = verticesIndex.size();
+			verticesIndex.put(vertex, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Split the binary edge file into blocks by the index of the destination
+	 * vertex, then delete it.
+	 *
+	 * @param binaryEdges
+	 * @throws IOException
+	 */
+	private void shardEdges(File binaryEdges) throws IOException {
+		if (numOfBlocks == 0) {
+			numOfBlocks = (numOfVertices + DEFAULT_VERTICES_PER_BLOCK - 1) / DEFAULT_VERTICES_PER_BLOCK;
+		}
+		numOfBlocks = Math.max(1, Math.min(numOfBlocks, numOfVertices));
+		verticesPerBlock = Math.max(1, (numOfVertices + numOfBlocks - 1) / numOfBlocks);
+		// rounding up the block size can leave the last blocks without
+		// vertices, so drop them: every block owns at least one vertex
+		numOfBlocks = Math.max(1, (numOfVertices + verticesPerBlock - 1) / verticesPerBlock);
+		blockFiles = new File[numOfBlocks];
+		DataOutputStream[] outs = new DataOutputStream[numOfBlocks];
+		int bufferSize = Math.max(8 << 10, BUFFER_SIZE / numOfBlocks);
+		for (int p = 0; p < numOfBlocks; p++) {
+			blockFiles[p] = new File(blocksDir, "block" + p + ".bin");
+			outs[p] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(blockFiles[p]), bufferSize));
+		}
+		FileChannel channel = FileChannel.open(binaryEdges.toPath(), StandardOpenOption.READ);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		while (channel.read(buffer) > 0) {
+			buffer.flip();
+			while (buffer.remaining() >= 8) {
+				int source = buffer.getInt();
+				int destination = buffer.getInt();
+				DataOutputStream out = outs[destination / verticesPerBlock];
+				out.writeInt(source);
+				out.writeInt(destination);
+			}
+			buffer.compact();
+		}
+		channel.close();
+		for (DataOutputStream out : outs) {
+			out.close();
+		}
+		binaryEdges.delete();
+	}
+}
@@ -0,0 +1,371 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * This class loads the text edge file written by {@link WikiCrawler} in
+ * parallel. The file is memory-mapped and split at line boundaries into
+ * chunks; every chunk is parsed by its own task into a buffer of vertex index
+ * pairs, with the indexes taken from one concurrent dictionary. The buffers
+ * are then merged into sorted adjacency arrays in compressed sparse row form:
+ * the out neighbours of vertex v are outTargets[outOffsets[v] ..
+ * outOffsets[v + 1]) and its in neighbours are inSources[inOffsets[v] ..
+ * inOffsets[v + 1]).
+ */
+public class GraphLoader {
+
+	/* Chunks are at most this large, a mapping can not exceed 2GB */
+	private static final long MAX_CHUNK_SIZE = 1L << 28;
+	/* Chunks are not split smaller than this */
+	private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+	private String graphFileName;
+	private int numOfThreads;
+	private int declaredNumOfVertices;
+	private ConcurrentHashMap<String, Integer> verticesIndex;
+	private AtomicInteger nextIndex;
+	private String[] verticesArray;
+	private int numOfEdges;
+	/* Source of the first edge in the file, the seed of the crawl */
+	private int firstVertex = -1;
+	private int[] outOffsets;
+	private int[] outTargets;
+	private int[] inOffsets;
+	private int[] inSources;
+
+	/**
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param numOfThreads
+	 *            Number of threads parsing the file.
+	 */
+	public GraphLoader(String fileName, int numOfThreads) {
+		if (numOfThreads <= 0) {
+			throw new IllegalArgumentException("Number of threads should be greater than 0.");
+		}
+		this.graphFileName = fileName;
+		this.numOfThreads = numOfThreads;
+		this.verticesIndex = new ConcurrentHashMap<String, Integer>();
+		this.nextIndex = new AtomicInteger();
+	}
+
+	/**
+	 * @return number of vertices given in the first line of the file
+	 */
+	public int declaredNumVertices() {
+		return declaredNumOfVertices;
+	}
+
+	public int numVertices() {
+		return verticesArray.length;
+	}
+
+	public int numEdges() {
+		return numOfEdges;
+	}
+
+	/**
+	 * @return index of the source of the first edge in the file, which is the
+	 *         seed page for graphs written by the crawler; -1 if there are no
+	 *         edges
+	 */
+	public int firstVertex() {
+		return firstVertex;
+	}
+
+	/**
+	 * @return <vertex, index of vertex>
+	 */
+	public ConcurrentHashMap<String, Integer> verticesIndex() {
+		return verticesIndex;
+	}
+
+	/**
+	 * @return the vertices/pages by index
+	 */
+	public String[] vertices() {
+		return verticesArray;
+	}
+
+	public int[] outOffsets() {
+		return outOffsets;
+	}
+
+	public int[] outTargets() {
+		return outTargets;
+	}
+
+	public int[] inOffsets() {
+		return inOffsets;
+	}
+
+	public int[] inSources() {
+		return inSources;
+	}
+
+	/**
+	 * Read the graph.
+	 *
+	 * @throws IOException
+	 */
+	public void load() throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(graphFileName), StandardOpenOption.READ);
+		try {
+			long start = readHeader(channel);
+			List<long[]> chunks = splitChunks(channel, start);
+			List<EdgeBuffer> buffers = parseChunks(channel, chunks);
+			verticesArray = new String[nextIndex.get()];
+			for (Map.Entry<String, Integer> entry : verticesIndex.entrySet()) {
+				verticesArray[entry.getValue()] = entry.getKey();
+			}
+			buildAdjacency(buffers);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read the number of vertices in the first line.
+	 *
+	 * @param channel
+	 * @return position of the first edge
+	 * @throws IOException
+	 */
+	private long readHeader(FileChannel channel) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		long position = 0;
+		while (true) {
+			buffer.clear();
+			if (channel.read(buffer, position) <= 0) {
+				break;
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				byte b = buffer.get();
+				position++;
+				if (b == '\n') {
+					declaredNumOfVertices = Integer.parseInt(sb.toString().trim());
+					return position;
+				}
+				sb.append((char) b);
+			}
+		}
+		declaredNumOfVertices = Integer.parseInt(sb.toString().trim());
+		return position;
+	}
+
+	/**
+	 * Split the file after the header into chunks that end at line ends.
+	 *
+	 * @param channel
+	 * @param start
+	 * @return list of {start, end} positions
+	 * @throws IOException
+	 */
+	private List<long[]> splitChunks(FileChannel channel, long start) throws IOException {
+		long size = channel.size();
+		long chunkSize = (size - start + numOfThreads * 4 - 1) / (numOfThreads * 4);
+		chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, chunkSize));
+		List<long[]> chunks = new ArrayList<long[]>();
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while (start < size) {
+			long end = Math.min(size, start + chunkSize);
+			// move the end behind the next line end
+			while (end < size) {
+				buffer.clear();
+				int length = channel.read(buffer, end);
+				int i = 0;
+				while (i < length && buffer.get(i) != '\n') {
+					i++;
+				}
+				end += i;
+				if (i < length) {
+					end++;
+					break;
+				}
+			}
+			if (end - start > Integer.MAX_VALUE) {
+				throw new IOException("Line too long in " + graphFileName);
+			}
+			chunks.add(new long[] { start, end });
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Parse every chunk in its own task.
+	 *
+	 * @param channel
+	 * @param chunks
+	 * @return the edges of every chunk, in file order
+	 * @throws IOException
+	 */
+	private List<EdgeBuffer> parseChunks(final FileChannel channel, List<long[]> chunks) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			List<Future<EdgeBuffer>> futures = new ArrayList<Future<EdgeBuffer>>();
+			for (final long[] chunk : chunks) {
+				futures.add(pool.submit(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0],
+						chunk[1] - chunk[0]))));
+			}
+			List<EdgeBuffer> buffers = new ArrayList<EdgeBuffer>();
+			for (Future<EdgeBuffer> future : futures) {
+				buffers.add(future.get());
+			}
+			return buffers;
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while reading " + graphFileName, e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to read " + graphFileName, e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Parse the lines "source destination" of one chunk.
+	 *
+	 * @param chunk
+	 * @return the edges of the chunk
+	 */
+	private EdgeBuffer parseChunk(MappedByteBuffer chunk) {
+		EdgeBuffer edges = new EdgeBuffer(Math.max(16, chunk.limit() / 32));
+		byte[] line = new byte[256];
+		int limit = chunk.limit();
+		int position = 0;
+		while (position < limit) {
+			int length = 0;
+			while (position < limit) {
+				byte b = chunk.get(position++);
+				if (b == '\n') {
+					break;
+				}
+				if (length == line.length) {
+					line = Arrays.copyOf(line, length * 2);
+				}
+				line[length++] = b;
+			}
+			if (length > 0 && line[length - 1] == '\r') {
+				length--;
+			}
+			int space = 0;
+			while (space < length && line[space] != ' ') {
+				space++;
+			}
+			int end = space + 1;
+			while (end < length && line[end] != ' ') {
+				end++;
+			}
+			if (space == 0 || end > length || end == space + 1) {
+				continue;
+			}
+			int source = indexOf(new String(line, 0, space, StandardCharsets.UTF_8));
+			int destination = indexOf(new String(line, space + 1, end - space - 1, StandardCharsets.UTF_8));
+			edges.add(source, destination);
+		}
+		return edges;
+	}
+
+	/**
+	 * @param vertex
+	 * @return index of the given vertex, a new one if it was not seen before
+	 */
+	private int indexOf(String vertex) {
+		Integer index = verticesIndex.get(vertex);
+		if (index == null) {
+			index = verticesIndex.computeIfAbsent(vertex, key -> nextIndex.getAndIncrement());
+		}
+		return index;
+	}
+
+	/**
+	 * Merge the edge buffers into out and in adjacency arrays, each list
+	 * sorted by vertex index.
+	 *
+	 * @param buffers
+	 */
+	private void buildAdjacency(List<EdgeBuffer> buffers) {
+		int numOfVertices = verticesArray.length;
+		long total = 0;
+		for (EdgeBuffer buffer : buffers) {
+			if (firstVertex < 0 && buffer.size > 0) {
+				firstVertex = buffer.pairs[0];
+			}
+			total += buffer.size;
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many edges in " + graphFileName + ": " + total);
+		}
+		numOfEdges = (int) total;
+		outOffsets = new int[numOfVertices + 1];
+		inOffsets = new int[numOfVertices + 1];
+		for (EdgeBuffer buffer : buffers) {
+			int[] pairs = buffer.pairs;
+			for (int i = 0; i < buffer.size; i++) {
+				outOffsets[pairs[2 * i] + 1]++;
+				inOffsets[pairs[2 * i + 1] + 1]++;
+			}
+		}
+		for (int v = 0; v < numOfVertices; v++) {
+			outOffsets[v + 1] += outOffsets[v];
+			inOffsets[v + 1] += inOffsets[v];
+		}
+		outTargets = new int[numOfEdges];
+		inSources = new int[numOfEdges];
+		int[] nextOut = Arrays.copyOf(outOffsets, numOfVertices);
+		int[] nextIn = Arrays.copyOf(inOffsets, numOfVertices);
+		for (EdgeBuffer buffer : buffers) {
+			int[] pairs = buffer.pairs;
+			for (int i = 0; i < buffer.size; i++) {
+				int source = pairs[2 * i];
+				int destination = pairs[2 * i + 1];
+				outTargets[nextOut[source]++] = destination;
+				inSources[nextIn[destination]++] = source;
+			}
+			buffer.pairs = null;
+		}
+		IntStream.range(0, numOfVertices).parallel().forEach(v -> {
+			Arrays.sort(outTargets, outOffsets[v], outOffsets[v + 1]);
+			Arrays.sort(inSources, inOffsets[v], inOffsets[v + 1]);
+		});
+	}
+
+	/**
+	 * Growing array of (source, destination) index pairs parsed by one task.
+	 */
+	private static class EdgeBuffer {
+		private int[] pairs;
+		private int size;
+
+		public EdgeBuffer(int capacity) {
+			this.pairs = new int[2 * capacity];
+		}
+
+		public void add(int source, int destination) {
+			if (2 * size == pairs.length) {
+				pairs = Arrays.copyOf(pairs, pairs.length * 2);
+			}
+			pairs[2 * size] = source;
+			pairs[2 * size + 1] = destination;
+			size++;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Fetch pages from the live site.
+ */
+public class HttpPageFetcher implements PageFetcher {
+
+	@Override
+	public InputStream open(URL url) throws IOException {
+		return url.openStream();
+	}
+
+	@Override
+	public boolean isLive() {
+		return true;
+	}
+}
@@ -0,0 +1,472 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Jaccard similarity of sets of vertex indexes. Exact similarities are computed
+ * by merging sorted arrays or by counting the common bits of bit sets. To find
+ * all pairs of vertices with similar neighbourhoods, every vertex gets a
+ * MinHash signature of its neighbours, and the signatures are cut into bands:
+ * vertices with an equal band are candidates, and only candidates are
+ * compared exactly, so similar pairs are found without comparing every pair.
+ *
+ * With b bands of r rows, a pair with similarity s becomes a candidate with
+ * probability 1 - (1 - s^r)^b; the threshold where this rises steeply is about
+ * (1/b)^(1/r).
+ *
+ * Vertices with the same neighbours, like the copies of a navigation template,
+ * all share every band and would make buckets of all their pairs. They are
+ * grouped first, and only the first vertex of every group takes part in the
+ * banding, so a similar pair found for it holds for every copy too.
+ */
+public class LinkSimilarity {
+
+	/* Bucket size up to which all pairs of a bucket are compared by default */
+	public static final int DEFAULT_MAX_BUCKET_SIZE = 64;
+
+	private int numOfVertices;
+	private int[] offsets;
+	private int[] neighbours;
+	private int numOfBands;
+	private int rowsPerBand;
+	private int numOfHashes;
+	/* signature of vertex v is signatures[v * numOfHashes .. (v + 1) * numOfHashes) */
+	private int[] signatures;
+	/* first vertex with the same neighbours as v, v itself if it is the first */
+	private int[] representatives;
+	/* number of vertices with the same neighbours as v, for every representative v */
+	private int[] numOfCopies;
+	/* candidate pairs of the last similarPairs call left out of large buckets */
+	private long numOfSkippedPairs = 0;
+
+	/**
+	 * A pair of vertices with the Jaccard similarity of their neighbours.
+	 */
+	public static class SimilarPair {
+		private int first;
+		private int second;
+		private double similarity;
+
+		public SimilarPair(int first, int second, double similarity) {
+			this.first = first;
+			this.second = second;
+			this.similarity = similarity;
+		}
+
+		public int first() {
+			return first;
+		}
+
+		public int second() {
+			return second;
+		}
+
+		public double similarity() {
+			return similarity;
+		}
+	}
+
+	/**
+	 * Pairs of vertices packed as first << 32 | second, sorted and without
+	 * repeats after compact().
+	 */
+	private static class PairBuffer {
+		private long[] pairs = new long[1024];
+		private int size = 0;
+
+		private void add(int u, int v) {
+			if (size == pairs.length) {
+				compact();
+				if (size > pairs.length / 2) {
+					pairs = Arrays.copyOf(pairs, pairs.length * 2);
+				}
+			}
+			pairs[size++] = u < v ? ((long) u << 32) | v : ((long) v << 32) | u;
+		}
+
+		private void compact() {
+			Arrays.sort(pairs, 0, size);
+			int distinct = 0;
+			for (int i = 0; i < size; i++) {
+				if (distinct == 0 || pairs[distinct - 1] != pairs[i]) {
+					pairs[distinct++] = pairs[i];
+				}
+			}
+			size = distinct;
+		}
+	}
+
+	/**
+	 * Compute the MinHash signatures of the neighbourhoods given as
+	 * compressed sparse rows, like the out adjacency arrays of
+	 * {@link GraphLoader}.
+	 *
+	 * @param offsets
+	 *            neighbours of v are neighbours[offsets[v] .. offsets[v + 1])
+	 * @param neighbours
+	 *            sorted within every range
+	 * @param numOfBands
+	 * @param rowsPerBand
+	 */
+	public LinkSimilarity(int[] offsets, int[] neighbours, int numOfBands, int rowsPerBand) {
+		if (numOfBands <= 0 || rowsPerBand <= 0) {
+			throw new IllegalArgumentException("Number of bands and rows per band should be greater than 0.");
+		}
+		if ((long) (offsets.length - 1) * numOfBands * rowsPerBand > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many signature entries; use fewer bands or rows.");
+		}
+		this.numOfVertices = offsets.length - 1;
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		this.numOfBands = numOfBands;
+		this.rowsPerBand = rowsPerBand;
+		this.numOfHashes = numOfBands * rowsPerBand;
+		this.signatures = new int[numOfVertices * numOfHashes];
+		IntStream.range(0, numOfVertices).parallel().forEach(v -> computeSignature(v));
+		groupCopies();
+	}
+
+	/**
+	 * Group the vertices with the same neighbours: sort them by a hash of
+	 * their neighbours, and compare the neighbours of the vertices of every
+	 * run of equal hashes.
+	 */
+	private void groupCopies() {
+		representatives = new int[numOfVertices];
+		numOfCopies = new int[numOfVertices];
+		long[] keys = new long[numOfVertices];
+		IntStream.range(0, numOfVertices).parallel().forEach(v -> {
+			long h = offsets[v + 1] - offsets[v];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				h = mix(h ^ neighbours[e]);
+			}
+			keys[v] = (h & 0xFFFFFFFF00000000L) | v;
+		});
+		Arrays.parallelSort(keys);
+		Arrays.fill(representatives, -1);
+		int start = 0;
+		for (int i = 1; i <= numOfVertices; i++) {
+			if (i == numOfVertices || keys[i] >>> 32 != keys[start] >>> 32) {
+				// vertices of a run are in ascending order, so the first of
+				// every group is its smallest vertex
+				for (int j = start; j < i; j++) {
+					int u = (int) keys[j];
+					if (representatives[u] >= 0) {
+						continue;
+					}
+					representatives[u] = u;
+					numOfCopies[u] = 1;
+					for (int l = j + 1; l < i; l++) {
+						int v = (int) keys[l];
+						if (representatives[v] < 0 && sameNeighbours(u, v)) {
+							representatives[v] = u;
+							numOfCopies[u]++;
+						}
+					}
+				}
+				start = i;
+			}
+		}
+	}
+
+	private boolean sameNeighbours(int u, int v) {
+		return Arrays.equals(neighbours, offsets[u], offsets[u + 1], neighbours, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * The i-th hash of a neighbour is h1 + i * h2 for two halves of one 64 bit
+	 * hash of the neighbour, so every neighbour is hashed once.
+	 */
+	private void computeSignature(int v) {
+		int base = v * numOfHashes;
+		Arrays.fill(signatures, base, base + numOfHashes, Integer.MAX_VALUE);
+		for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+			long x = mix(neighbours[e]);
+			int h1 = (int) x;
+			int h2 = (int) (x >>> 32) | 1;
+			for (int i = 0; i < numOfHashes; i++) {
+				int h = (h1 + i * h2) & 0x7FFFFFFF;
+				if (h < signatures[base + i]) {
+					signatures[base + i] = h;
+				}
+			}
+		}
+	}
+
+	private static long mix(long x) {
+		x += 0x9E3779B97F4A7C15L;
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		return x ^ (x >>> 31);
+	}
+
+	/**
+	 * @param u
+	 * @param v
+	 * @return the share of equal signature entries of the given vertices, an
+	 *         estimate of the Jaccard similarity of their neighbours
+	 */
+	public double estimatedJaccard(int u, int v) {
+		if (offsets[u] == offsets[u + 1] || offsets[v] == offsets[v + 1]) {
+			return 0;
+		}
+		int equal = 0;
+		for (int i = 0; i < numOfHashes; i++) {
+			if (signatures[u * numOfHashes + i] == signatures[v * numOfHashes + i]) {
+				equal++;
+			}
+		}
+		return (double) equal / numOfHashes;
+	}
+
+	/**
+	 * @param u
+	 * @param v
+	 * @return the Jaccard similarity of the neighbours of the given vertices
+	 */
+	public double jaccard(int u, int v) {
+		return jaccard(neighbours, offsets[u], offsets[u + 1], neighbours, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * @param v
+	 * @return the smallest vertex with the same neighbours as v
+	 */
+	public int representativeOf(int v) {
+		return representatives[v];
+	}
+
+	/**
+	 * @param v
+	 * @return the number of vertices with the same neighbours as v, v included
+	 */
+	public int numOfCopiesOf(int v) {
+		return numOfCopies[representatives[v]];
+	}
+
+	/**
+	 * @return every group of at least two vertices with the same, non empty,
+	 *         neighbours, in ascending order within and across the groups
+	 */
+	public ArrayList<int[]> identicalGroups() {
+		ArrayList<int[]> groups = new ArrayList<int[]>();
+		int[] groupOf = new int[numOfVertices];
+		int[] numOfMembers = new int[numOfVertices];
+		for (int v = 0; v < numOfVertices; v++) {
+			int r = representatives[v];
+			if (numOfCopies[r] < 2 || offsets[r] == offsets[r + 1]) {
+				continue;
+			}
+			// the representative is the smallest vertex of its group
+			if (r == v) {
+				groupOf[r] = groups.size();
+				groups.add(new int[numOfCopies[r]]);
+			}
+			groups.get(groupOf[r])[numOfMembers[r]++] = v;
+		}
+		return groups;
+	}
+
+	/**
+	 * @return the number of candidate pairs the last
+	 *         {@link #similarPairs(double, int)} left out of buckets larger
+	 *         than its maximum bucket size, counted once per band
+	 */
+	public long numOfSkippedPairs() {
+		return numOfSkippedPairs;
+	}
+
+	/**
+	 * {@link #similarPairs(double, int)} with buckets of up to
+	 * DEFAULT_MAX_BUCKET_SIZE vertices compared completely.
+	 */
+	public ArrayList<SimilarPair> similarPairs(double threshold) {
+		return similarPairs(threshold, DEFAULT_MAX_BUCKET_SIZE);
+	}
+
+	/**
+	 * Find the pairs of vertices whose neighbours have a Jaccard similarity of
+	 * at least the given threshold, among the pairs sharing a band of their
+	 * signatures. Only the first vertex of every group of vertices with the
+	 * same neighbours is paired, see {@link #identicalGroups()}. Pairs below
+	 * the banding threshold are likely to be missed.
+	 *
+	 * Buckets of more than maxBucketSize vertices are not expanded into all
+	 * their pairs: every vertex is paired with the next maxBucketSize - 1
+	 * vertices of the bucket in an order shuffled per band, so a bucket costs
+	 * linear time. {@link #numOfSkippedPairs()} tells how many candidate pairs
+	 * this left out.
+	 *
+	 * @param threshold
+	 * @param maxBucketSize
+	 * @return the similar pairs, each once with first < second
+	 */
+	public ArrayList<SimilarPair> similarPairs(double threshold, int maxBucketSize) {
+		if (maxBucketSize < 2) {
+			throw new IllegalArgumentException("Maximum bucket size should be at least 2.");
+		}
+		PairBuffer candidates = new PairBuffer();
+		long[] keys = new long[numOfVertices];
+		long[] shuffled = new long[numOfVertices];
+		numOfSkippedPairs = 0;
+		for (int b = 0; b < numOfBands; b++) {
+			// band hash in the high half and vertex in the low half, so
+			// sorting groups the vertices of every bucket
+			int numOfKeys = 0;
+			for (int v = 0; v < numOfVertices; v++) {
+				if (offsets[v] < offsets[v + 1] && representatives[v] == v) {
+					keys[numOfKeys++] = ((long) bandHash(v, b) << 32) | v;
+				}
+			}
+			Arrays.sort(keys, 0, numOfKeys);
+			int start = 0;
+			for (int i = 1; i <= numOfKeys; i++) {
+				if (i == numOfKeys || keys[i] >>> 32 != keys[start] >>> 32) {
+					if (i - start <= maxBucketSize) {
+						for (int j = start; j < i; j++) {
+							for (int l = j + 1; l < i; l++) {
+								candidates.add((int) keys[j], (int) keys[l]);
+							}
+						}
+					} else {
+						int size = i - start;
+						for (int j = 0; j < size; j++) {
+							int v = (int) keys[start + j];
+							shuffled[j] = (mix(((long) b << 32) | v) & 0xFFFFFFFF00000000L) | v;
+						}
+						Arrays.sort(shuffled, 0, size);
+						for (int j = 0; j < size; j++) {
+							for (int l = j + 1; l < Math.min(size, j + maxBucketSize); l++) {
+								candidates.add((int) shuffled[j], (int) shuffled[l]);
+							}
+						}
+						// all pairs but those of every vertex with the next ones
+						long numOfPaired = (long) (size - maxBucketSize + 1) * (maxBucketSize - 1)
+								+ (long) (maxBucketSize - 1) * (maxBucketSize - 2) / 2;
+						numOfSkippedPairs += (long) size * (size - 1) / 2 - numOfPaired;
+					}
+					start = i;
+				}
+			}
+		}
+		candidates.compact();
+		ArrayList<SimilarPair> result = new ArrayList<SimilarPair>();
+		// candidates are sorted by first and then second vertex
+		for (int i = 0; i < candidates.size; i++) {
+			int u = (int) (candidates.pairs[i] >>> 32);
+			int v = (int) candidates.pairs[i];
+			double similarity = jaccard(u, v);
+			if (similarity >= threshold) {
+				result.add(new SimilarPair(u, v, similarity));
+			}
+		}
+		return result;
+	}
+
+	private int bandHash(int v, int band) {
+		int h = 0x811C9DC5 ^ band;
+		int base = v * numOfHashes + band * rowsPerBand;
+		for (int i = base; i < base + rowsPerBand; i++) {
+			h = (h ^ signatures[i]) * 0x01000193;
+		}
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * @param ids
+	 *            vertex indexes, in any order and possibly repeated
+	 * @return the distinct indexes in ascending order
+	 */
+	public static int[] sortedSet(int[] ids) {
+		int[] values = Arrays.copyOf(ids, ids.length);
+		Arrays.sort(values);
+		int size = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (size == 0 || values[size - 1] != values[i]) {
+				values[size++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * @param a
+	 *            sorted indexes
+	 * @param b
+	 *            sorted indexes
+	 * @return the Jaccard similarity of the given sets, 0 if both are empty
+	 */
+	public static double jaccard(int[] a, int[] b) {
+		return jaccard(a, 0, a.length, b, 0, b.length);
+	}
+
+	/**
+	 * Merge two sorted ranges, counting repeated indexes once.
+	 *
+	 * @return the Jaccard similarity of a[aFrom, aTo) and b[bFrom, bTo)
+	 */
+	public static double jaccard(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+		int i = aFrom;
+		int j = bFrom;
+		int intersection = 0;
+		int union = 0;
+		while (i < aTo || j < bTo) {
+			int value;
+			if (j == bTo || (i < aTo && a[i] < b[j])) {
+				value = a[i];
+			} else if (i == aTo || b[j] < a[i]) {
+				value = b[j];
+			} else {
+				value = a[i];
+				intersection++;
+			}
+			union++;
+			while (i < aTo && a[i] == value) {
+				i++;
+			}
+			while (j < bTo && b[j] == value) {
+				j++;
+			}
+		}
+		return union == 0 ? 0 : (double) intersection / union;
+	}
+
+	/**
+	 * @param ids
+	 *            vertex indexes
+	 * @param numOfIds
+	 *            number of possible indexes
+	 * @return the bit set of the given indexes
+	 */
+	public static long[] bitSetOf(int[] ids, int numOfIds) {
+		long[] bits = new long[(numOfIds + 63) >>> 6];
+		for (int id : ids) {
+			bits[id >>> 6] |= 1L << id;
+		}
+		return bits;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 *            bit sets over the same indexes
+	 * @return the Jaccard similarity of the given sets, 0 if both are empty
+	 */
+	public static double jaccard(long[] a, long[] b) {
+		int intersection = 0;
+		int union = 0;
+		int common = Math.min(a.length, b.length);
+		for (int w = 0; w < common; w++) {
+			intersection += Long.bitCount(a[w] & b[w]);
+			union += Long.bitCount(a[w] | b[w]);
+		}
+		for (int w = common; w < a.length; w++) {
+			union += Long.bitCount(a[w]);
+		}
+		for (int w = common; w < b.length; w++) {
+			union += Long.bitCount(b[w]);
+		}
+		return union == 0 ? 0 : (double) intersection / union;
+	}
+}
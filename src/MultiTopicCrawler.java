@@ -0,0 +1,323 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Focused crawling of several topics in one session. Every topic has its own
+ * seed, key words, maximum and graph file, and its own visited pages, queue and
+ * graph, exactly like a {@link WikiCrawler} of its own. The topics share
+ * robots.txt, the redirects and every fetched page: the links of a page are
+ * extracted once, and its text is scanned once for the key words of all
+ * topics, so the number of requests grows with the union of the crawled pages
+ * instead of their sum.
+ */
+public class MultiTopicCrawler {
+
+	/**
+	 * A named topic to crawl.
+	 */
+	public static class Topic {
+		private String name;
+		private String seedUrl;
+		private String[] keywords;
+		private int max;
+		private String fileName;
+		/* indexes of the key words in MultiTopicCrawler.keywords */
+		private int[] keywordIndexes;
+		private HashSet<String> visitedSet = new HashSet<String>();
+		private LinkedList<String> visitedList = new LinkedList<String>();
+		private Queue<String> waitingQ = new LinkedList<String>();
+		private HashMap<String, LinkedList<String>> graph = new HashMap<String, LinkedList<String>>();
+		private int numOfEdges = 0;
+
+		/**
+		 * @param name
+		 *            name of the topic, used in messages
+		 * @param seedUrl
+		 *            relative address of the seed url
+		 * @param keywords
+		 *            contains key words that describe the topic
+		 * @param max
+		 *            representing Maximum number sites to be crawled
+		 * @param fileName
+		 *            name of the file the graph will be written to
+		 */
+		public Topic(String name, String seedUrl, String[] keywords, int max, String fileName) {
+			if (keywords == null || keywords.length == 0) {
+				throw new IllegalArgumentException("Key words of " + name + " can not be empty.");
+			}
+			if (max <= 0) {
+				throw new IllegalArgumentException("Maximum number sites to be crawled should be greater than 0.");
+			}
+			this.name = name;
+			this.seedUrl = seedUrl.trim();
+			this.keywords = keywords;
+			this.max = max;
+			this.fileName = fileName;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public String fileName() {
+			return fileName;
+		}
+	}
+
+	private Topic[] topics;
+	/* distinct lower case key words of all topics */
+	private String[] keywords;
+	private HashSet<String> disallowedSites;
+	private TitleResolver resolver;
+	private PageFetcher fetcher;
+	/* links of every page whose html was fetched, null if it failed */
+	private HashMap<String, ArrayList<String>> linksOf;
+	/* topics whose key words are all in the text of every checked page */
+	private HashMap<String, BitSet> topicsOf;
+	private int requestsCount = 0; // waited for 5 seconds after every 100
+									// request
+	private int numOfLookups = 0; // pages asked for by all topics
+
+	/**
+	 * @param topics
+	 *            topics to crawl
+	 */
+	public MultiTopicCrawler(Topic[] topics) {
+		this(topics, new HttpPageFetcher());
+	}
+
+	/**
+	 * @param topics
+	 *            topics to crawl
+	 * @param fetcher
+	 *            where pages are fetched from
+	 */
+	public MultiTopicCrawler(Topic[] topics, PageFetcher fetcher) {
+		if (topics == null || topics.length == 0) {
+			throw new IllegalArgumentException("Topics can not be empty.");
+		}
+		if (fetcher == null) {
+			throw new IllegalArgumentException("Page fetcher can not be null.");
+		}
+		this.topics = topics;
+		this.fetcher = fetcher;
+		this.linksOf = new HashMap<String, ArrayList<String>>();
+		this.topicsOf = new HashMap<String, BitSet>();
+		this.resolver = new TitleResolver();
+		HashMap<String, Integer> keywordIndexes = new HashMap<String, Integer>();
+		for (Topic topic : topics) {
+			resolver.loadRedirects(WikiCrawler.redirectsFileName(topic.fileName));
+			HashSet<Integer> indexes = new HashSet<Integer>();
+			for (String s : topic.keywords) {
+				String keyword = s.toLowerCase();
+				if (!keywordIndexes.containsKey(keyword)) {
+					keywordIndexes.put(keyword, keywordIndexes.size());
+				}
+				indexes.add(keywordIndexes.get(keyword));
+			}
+			topic.keywordIndexes = new int[indexes.size()];
+			int i = 0;
+			for (int index : indexes) {
+				topic.keywordIndexes[i++] = index;
+			}
+		}
+		this.keywords = new String[keywordIndexes.size()];
+		for (String keyword : keywordIndexes.keySet()) {
+			keywords[keywordIndexes.get(keyword)] = keyword;
+		}
+		this.disallowedSites = WikiCrawler.getDisallowedSites(fetcher);
+		requestsCount++;
+		for (int t = 0; t < topics.length; t++) {
+			Topic topic = topics[t];
+			String seed = resolver.canonical(topic.seedUrl);
+			if (!(isValidPage(seed) && seed.startsWith("/wiki/"))) {
+				throw new IllegalArgumentException(topic.seedUrl + " is not a valid wiki page.");
+			}
+			boolean aboutTopic = topicsOf(seed).get(t);
+			if (!aboutTopic && resolver.isRedirect(seed)) {
+				seed = resolver.canonical(seed);
+				aboutTopic = isValidPage(seed) && topicsOf(seed).get(t);
+			}
+			if (!aboutTopic) {
+				throw new IllegalArgumentException(topic.seedUrl + " does not contain all keywords of " + topic.name
+						+ ".");
+			}
+			topic.seedUrl = seed;
+		}
+	}
+
+	/**
+	 * Crawl all topics, taking one page from the queue of every topic in
+	 * turn, and write the graph of every topic to its file.
+	 */
+	public void crawl() {
+		System.out.println("MultiTopicCrawler is crawling " + topics.length + " topics......");
+		for (Topic topic : topics) {
+			topic.visitedSet.add(topic.seedUrl);
+			topic.visitedList.add(topic.seedUrl);
+			topic.waitingQ.add(topic.seedUrl);
+		}
+		boolean working = true;
+		while (working) {
+			working = false;
+			for (int t = 0; t < topics.length; t++) {
+				String url = topics[t].waitingQ.poll();
+				if (url != null) {
+					working = true;
+					extractLinks(t, url);
+				}
+			}
+		}
+		for (Topic topic : topics) {
+			topic.numOfEdges = WikiCrawler.outputGraph(topic.fileName, topic.max, topic.visitedList, topic.graph);
+			resolver.outputRedirects(WikiCrawler.redirectsFileName(topic.fileName));
+			System.out.println("The graph of " + topic.name + " has " + topic.numOfEdges + " edges.");
+		}
+		System.out.println("My crawler program sent requests to wiki " + requestsCount + " times for "
+				+ numOfLookups + " pages asked for by all topics.");
+		System.out.println(resolver.numOfRedirects() + " redirects were resolved to their canonical pages.");
+	}
+
+	private boolean isValidPage(String url) {
+		return WikiCrawler.isValidPage(url, disallowedSites);
+	}
+
+	/**
+	 * Add the edges of the given page to the graph of the given topic, and
+	 * collect the new pages it links to that are about the topic.
+	 *
+	 * @param t
+	 *            index of the topic
+	 * @param url
+	 */
+	private void extractLinks(int t, String url) {
+		Topic topic = topics[t];
+		HashSet<String> edgeSet = new HashSet<String>();
+		LinkedList<String> edgeList = new LinkedList<String>();
+		ArrayList<String> links = linksOf(url);
+		if (links != null) {
+			for (String s : links) {
+				String link = resolver.canonical(s);
+				if (!edgeSet.contains(link) && !link.equals(url)) {
+					String vertex = admitLink(t, link);
+					if (vertex != null && !edgeSet.contains(vertex) && !vertex.equals(url)) {
+						edgeSet.add(vertex);
+						edgeList.add(vertex);
+					}
+				}
+			}
+		}
+		topic.graph.put(url, edgeList);
+	}
+
+	/**
+	 * Decide which vertex an edge of the given topic to the given canonical
+	 * link should point to, like {@link WikiCrawler} does for its only topic.
+	 *
+	 * @param t
+	 *            index of the topic
+	 * @param link
+	 *            canonical relative address
+	 * @return the vertex the edge points to, or null if there is no edge
+	 */
+	private String admitLink(int t, String link) {
+		Topic topic = topics[t];
+		String vertex = WikiCrawler.vertexOf(link, topic.visitedSet, topic.max, disallowedSites, resolver,
+				page -> topicsOf(page).get(t));
+		if (vertex != null && topic.visitedSet.add(vertex)) {
+			topic.visitedList.add(vertex);
+			topic.waitingQ.add(vertex);
+		}
+		return vertex;
+	}
+
+	/**
+	 * Count a page asked for by a topic. Every page lookup of a topic goes
+	 * through here, so each is counted once.
+	 *
+	 * @param cache
+	 *            linksOf or topicsOf
+	 * @param url
+	 * @return whether the page is in the cache
+	 */
+	private boolean isCached(HashMap<String, ?> cache, String url) {
+		numOfLookups++;
+		return cache.containsKey(url);
+	}
+
+	/**
+	 * Get the links in the actual text component of the given page, fetching
+	 * the page the first time it is asked for.
+	 *
+	 * @param url
+	 * @return the links in the order they appear, or null if the page could
+	 *         not be fetched
+	 */
+	private ArrayList<String> linksOf(String url) {
+		if (isCached(linksOf, url)) {
+			return linksOf.get(url);
+		}
+		ArrayList<String> links = null;
+		WikiCrawler.waitForLiveSite(requestsCount, fetcher);
+		try {
+			BufferedReader br = WikiCrawler.readerOf(fetcher, WikiCrawler.absoluteAddress(url));
+			requestsCount++;
+			links = WikiCrawler.linksOf(br);
+			br.close();
+		} catch (MalformedURLException e) {
+			System.err.println("Bad url: " + url);
+			links = null;
+		} catch (IOException e) {
+			System.err.println("Failed to oepn url stream: " + url);
+			links = null;
+		}
+		linksOf.put(url, links);
+		return links;
+	}
+
+	/**
+	 * Get the topics whose key words are all in the text of the given page.
+	 * The first time a page is asked for, its text is fetched and scanned once
+	 * for the key words of all topics. If the page is a redirect, the redirect
+	 * is cached and the page is about no topic.
+	 *
+	 * @param url
+	 * @return indexes of the topics the page is about
+	 */
+	private BitSet topicsOf(String url) {
+		if (isCached(topicsOf, url)) {
+			return topicsOf.get(url);
+		}
+		BitSet result = new BitSet(topics.length);
+		WikiCrawler.waitForLiveSite(requestsCount, fetcher);
+		try {
+			BufferedReader br = WikiCrawler.readerOf(fetcher, WikiCrawler.textPageAddress(url));
+			requestsCount++;
+			String line = br.readLine();
+			if (!resolver.learnRedirect(url, line)) {
+				BitSet found = WikiCrawler.keywordsIn(line, br, keywords);
+				for (int t = 0; t < topics.length; t++) {
+					boolean aboutTopic = true;
+					for (int k : topics[t].keywordIndexes) {
+						aboutTopic = aboutTopic && found.get(k);
+					}
+					result.set(t, aboutTopic);
+				}
+			}
+			br.close();
+		} catch (MalformedURLException e) {
+			System.err.println("Bad url: " + url);
+		} catch (IOException e) {
+			System.err.println("Failed to open url in stream: " + url + ". Skipped.");
+		}
+		topicsOf.put(url, result);
+		return result;
+	}
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * This class computes the same page ranks as {@link PageRank} for graphs whose
+ * edges do not fit in memory. The edge file is split once into
+ * destination-partitioned {@link EdgeBlocks} on disk. Every step of the random
+ * walk streams the blocks sequentially, so only the vertex dictionary, the out
+ * degrees and the rank vectors are kept in memory.
+ */
+public class OutOfCorePageRank {
+
+	private final double BETA = 0.85;
+
+	private double epsilon;
+	private EdgeBlocks blocks;
+	private int numOfVertices;
+	private double[] rankVector;
+	private int numberOfSteps = 0;
+
+	/**
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @throws IOException
+	 */
+	public OutOfCorePageRank(String fileName, double epsilon) throws IOException {
+		this(fileName, epsilon, 0);
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @param numOfBlocks
+	 *            Number of blocks the edges are split into; 0 chooses it from
+	 *            the number of vertices.
+	 * @throws IOException
+	 */
+	public OutOfCorePageRank(String fileName, double epsilon, int numOfBlocks) throws IOException {
+		this.epsilon = epsilon;
+		this.blocks = new EdgeBlocks(fileName, numOfBlocks);
+		this.numOfVertices = blocks.numVertices();
+		this.rankVector = computeRank();
+	}
+
+	/**
+	 * gets name of vertex of the graph as parameter and returns its page rank
+	 *
+	 * @param url
+	 * @return
+	 */
+	public double pageRankOf(String url) {
+		return rankVector[blocks.indexOf(url)];
+	}
+
+	/**
+	 * gets name of vertex of the graph as parameter and returns its out degree
+	 *
+	 * @param url
+	 * @return out degree of given vertex
+	 */
+	public int outDegreeOf(String url) {
+		int index = blocks.indexOf(url);
+		return index < 0 ? 0 : blocks.outDegrees()[index];
+	}
+
+	/**
+	 * @return the number of edges in the graph
+	 */
+	public long numEdges() {
+		return blocks.numEdges();
+	}
+
+	/**
+	 * @return the number of steps the random walk took to converge
+	 */
+	public int numSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * gets an integer k as parameter and returns an array (of strings) of pages
+	 * with top k page ranks.
+	 *
+	 * @param k
+	 * @return top k rank pages
+	 */
+	public String[] topKPageRank(int k) {
+		return topK(rankVector, blocks.vertices(), k);
+	}
+
+	/**
+	 * Remove the blocks from disk.
+	 */
+	public void deleteBlocks() {
+		blocks.delete();
+	}
+
+	/**
+	 * Return the pages with the k highest values without sorting all of them.
+	 *
+	 * @param data
+	 *            value of every vertex
+	 * @param vertices
+	 *            the vertices/pages by index
+	 * @param k
+	 * @return String array containing the top k pages
+	 */
+	static String[] topK(final double[] data, String[] vertices, int k) {
+		k = Math.min(k, data.length);
+		PriorityQueue<Integer> heap = new PriorityQueue<Integer>(k + 1,
+				(a, b) -> Double.compare(data[a], data[b]));
+		for (int i = 0; i < data.length; i++) {
+			heap.add(i);
+			if (heap.size() > k) {
+				heap.poll();
+			}
+		}
+		String[] result = new String[k];
+		for (int j = k - 1; j >= 0; j--) {
+			result[j] = vertices[heap.poll()];
+		}
+		return result;
+	}
+
+	/**
+	 * Simulate one step of the random walk by streaming every block once.
+	 *
+	 * @param pN
+	 * @param pNPlusOne
+	 *            filled with the next rank vector
+	 * @param contributions
+	 *            filled with the rank each vertex passes along each out edge
+	 * @param buffer
+	 *            buffer used to read the blocks
+	 * @throws IOException
+	 */
+	private void simulateOneStep(double[] pN, double[] pNPlusOne, double[] contributions, ByteBuffer buffer)
+			throws IOException {
+		int[] outDegrees = blocks.outDegrees();
+		double danglingSum = 0;
+		for (int i = 0; i < numOfVertices; i++) {
+			if (outDegrees[i] == 0) {
+				danglingSum += pN[i];
+				contributions[i] = 0;
+			} else {
+				contributions[i] = BETA * pN[i] / outDegrees[i];
+			}
+		}
+		double defaultValue = (1.0 - BETA) / numOfVertices + BETA * danglingSum / numOfVertices;
+		Arrays.fill(pNPlusOne, defaultValue);
+		for (int p = 0; p < blocks.numBlocks(); p++) {
+			FileChannel channel = FileChannel.open(blocks.blockFile(p).toPath(), StandardOpenOption.READ);
+			buffer.clear();
+			while (channel.read(buffer) > 0) {
+				buffer.flip();
+				while (buffer.remaining() >= 8) {
+					int source = buffer.getInt();
+					int destination = buffer.getInt();
+					pNPlusOne[destination] += contributions[source];
+				}
+				buffer.compact();
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * Compute the Rank vector
+	 *
+	 * @return the Rank vector
+	 * @throws IOException
+	 */
+	private double[] computeRank() throws IOException {
+		double[] pN = new double[numOfVertices];
+		double[] pNPlusOne = new double[numOfVertices];
+		double[] contributions = new double[numOfVertices];
+		ByteBuffer buffer = ByteBuffer.allocateDirect(EdgeBlocks.BUFFER_SIZE);
+		Arrays.fill(pN, 1.0 / numOfVertices);
+		boolean converged = false;
+		while (!converged) {
+			simulateOneStep(pN, pNPlusOne, contributions, buffer);
+			double norm = 0;
+			for (int i = 0; i < numOfVertices; i++) {
+				norm += Math.abs(pNPlusOne[i] - pN[i]);
+			}
+			converged = norm <= epsilon;
+			double[] tmp = pN;
+			pN = pNPlusOne;
+			pNPlusOne = tmp;
+			numberOfSteps++;
+		}
+		System.out.println("It takes " + numberOfSteps + " steps to compute the rank vector from "
+				+ blocks.numBlocks() + " blocks.");
+		return pN;
+	}
+}
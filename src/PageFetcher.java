@@ -0,0 +1,28 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Where {@link WikiCrawler} gets its pages from: the live site
+ * ({@link HttpPageFetcher}), the live site while recording every response
+ * ({@link RecordingPageFetcher}), or a recorded {@link CrawlArchive}
+ * ({@link ReplayPageFetcher}).
+ */
+public interface PageFetcher {
+
+	/**
+	 * Open the content of the given address.
+	 * 
+	 * @param url
+	 * @return stream of the response body
+	 * @throws IOException
+	 *             if the page can not be fetched
+	 */
+	InputStream open(URL url) throws IOException;
+
+	/**
+	 * @return true if requests go to the live site, so the crawler has to
+	 *         wait between them
+	 */
+	boolean isLive();
+}
@@ -1,20 +1,14 @@
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * This class have methods to compute page rank of nodes/pages of a web graph.
@@ -26,19 +20,39 @@ public class PageRank {
 
 	private String graphFileName;
 	private double epsilon;
-	/* <vertex i, LinkedList<vertex j, such that (i,j) is an edge>> */
-	private HashMap<String, LinkedList<String>> graphOut;
-	/* <vertex i, LinkedList<vertex j, such that (j,i) is an edge>> */
-	private HashMap<String, LinkedList<String>> graphIn;
+	/* vertex j such that (i,j) is an edge: outTargets[outOffsets[i] .. outOffsets[i + 1]) */
+	private int[] outOffsets;
+	private int[] outTargets;
+	/* vertex j such that (j,i) is an edge: inSources[inOffsets[i] .. inOffsets[i + 1]) */
+	private int[] inOffsets;
+	private int[] inSources;
 	/* Store the vertices/pages in an array */
 	private String[] verticesArray;
 	/* Used to check the index of given page */
-	private HashMap<String, Integer> verticesIndex;
+	private Map<String, Integer> verticesIndex;
 	private int numOfVertices;
 	private int numOfEdges;
 	private double[] rankVector;
 	private final double BETA = 0.85;
 	private int numberOfSteps = 0;
+	/* Number of page updates of the last computation */
+	private long numOfUpdates = 0;
+	/* Adaptive ranking updates every page again after this many steps */
+	private static final int FULL_SWEEP_INTERVAL = 10;
+	/* Adaptive ranking freezes a page whose relative change is at most this times epsilon */
+	private static final double FREEZE_TOLERANCE = 0.3;
+	/* Steps run untimed, and steps timed, before and after reordering the vertices */
+	private static final int WARMUP_STEPS = 5;
+	private static final int TIMED_STEPS = 11;
+	/* Index of the seed page, the source of the first edge */
+	private int firstVertex;
+	/* BETA / out degree of every vertex, 0 if it has no out edges */
+	private double[] scaledInverseDegrees;
+	private int[] danglingVertices;
+	/* Rank every vertex passes along each of its out edges in a step */
+	private double[] contributions;
+	/* Sum of the rank vector at the start of the last step */
+	private double rankSum;
 	private String[] topKRanks;
 	private String[] topKInDegrees;
 	private String[] topKOutDegrees;
@@ -52,13 +66,61 @@ public class PageRank {
 	 * @throws FileNotFoundException
 	 */
 	public PageRank(String fileName, double epsilon) throws FileNotFoundException {
+		this(fileName, epsilon, VertexOrdering.Strategy.NONE);
+	}
+
+	/**
+	 * 
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @param ordering
+	 *            How to reorder the vertices before computing the ranks.
+	 * @throws FileNotFoundException
+	 */
+	public PageRank(String fileName, double epsilon, VertexOrdering.Strategy ordering) throws FileNotFoundException {
+		this(fileName, epsilon, ordering, false);
+	}
+
+	/**
+	 * 
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @param ordering
+	 *            How to reorder the vertices before computing the ranks.
+	 * @param adaptive
+	 *            true to stop updating pages whose rank has settled, see
+	 *            {@link #computeAdaptiveRank()}.
+	 * @throws FileNotFoundException
+	 */
+	public PageRank(String fileName, double epsilon, VertexOrdering.Strategy ordering, boolean adaptive)
+			throws FileNotFoundException {
 		this.graphFileName = fileName;
 		this.epsilon = epsilon;
-		this.graphOut = new HashMap<String, LinkedList<String>>();
-		this.graphIn = new HashMap<String, LinkedList<String>>();
-		this.verticesIndex = new HashMap<String, Integer>();
 		this.numOfVertices = readGraph();
-		this.rankVector = computeRank();
+		if (ordering != VertexOrdering.Strategy.NONE) {
+			reorderVertices(ordering);
+		}
+		this.rankVector = adaptive ? computeAdaptiveRank() : computeRank();
+	}
+
+	/**
+	 * @return the number of steps the random walk took to converge
+	 */
+	public int numSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * @return the number of page ranks computed in all the steps, the number
+	 *         of steps times the number of pages unless the ranks were
+	 *         computed adaptively
+	 */
+	public long numUpdates() {
+		return numOfUpdates;
 	}
 
 	/**
@@ -79,13 +141,11 @@ public class PageRank {
 	 * @return out degree of given vertex
 	 */
 	public int outDegreeOf(String url) {
-		int outDegree;
-		if (graphOut.get(url) == null) {
-			outDegree = 0;
-		} else {
-			outDegree = graphOut.get(url).size();
+		Integer index = verticesIndex.get(url);
+		if (index == null) {
+			return 0;
 		}
-		return outDegree;
+		return outOffsets[index + 1] - outOffsets[index];
 	}
 
 	/**
@@ -95,13 +155,11 @@ public class PageRank {
 	 * @return in degree of given vertex
 	 */
 	public int inDegreeOf(String url) {
-		int inDegree;
-		if (graphIn.get(url) == null) {
-			inDegree = 0;
-		} else {
-			inDegree = graphIn.get(url).size();
+		Integer index = verticesIndex.get(url);
+		if (index == null) {
+			return 0;
 		}
-		return inDegree;
+		return inOffsets[index + 1] - inOffsets[index];
 	}
 
 	/**
@@ -111,6 +169,18 @@ public class PageRank {
 		return numOfEdges;
 	}
 
+	/**
+	 * Write the ranked graph to a file that {@link RankQueryServer} can serve.
+	 * 
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void writeSnapshot(String fileName) throws IOException {
+		RankSnapshot snapshot = new RankSnapshot(verticesArray, rankVector, outOffsets, outTargets, inOffsets,
+				inSources);
+		snapshot.write(fileName);
+	}
+
 	/**
 	 * gets an integer k as parameter and returns an array (of strings) of pages
 	 * with top k page ranks.
@@ -133,7 +203,7 @@ public class PageRank {
 	public String[] topKInDegree(int k) {
 		double[] inDegrees = new double[numOfVertices];
 		for (int i = 0; i < numOfVertices; i++) {
-			inDegrees[i] = inDegreeOf(verticesArray[i]);
+			inDegrees[i] = inOffsets[i + 1] - inOffsets[i];
 		}
 		topKInDegrees = topK(inDegrees, k);
 		return topKInDegrees;
@@ -149,7 +219,7 @@ public class PageRank {
 	public String[] topKOutDegree(int k) {
 		double[] outDegrees = new double[numOfVertices];
 		for (int i = 0; i < numOfVertices; i++) {
-			outDegrees[i] = outDegreeOf(verticesArray[i]);
+			outDegrees[i] = outOffsets[i + 1] - outOffsets[i];
 		}
 		topKOutDegrees = topK(outDegrees, k);
 		return topKOutDegrees;
@@ -204,97 +274,125 @@ public class PageRank {
 	}
 
 	/**
-	 * Read the file that contains the edges of the graph, and store the
-	 * information in the HashMap
+	 * Read the file that contains the edges of the graph with a
+	 * {@link GraphLoader}, and store the adjacency arrays
 	 * 
 	 * @throws FileNotFoundException
 	 */
 	private int readGraph() throws FileNotFoundException {
-		File graphFile = new File(this.graphFileName);
-		Scanner scanner = new Scanner(graphFile);
-		String line = scanner.nextLine();
-		int numOfVertices = Integer.parseInt(line.trim());
-		HashSet<String> vertices = new HashSet<String>();
-		while (scanner.hasNextLine()) {
-			numOfEdges++;
-			String[] links = scanner.nextLine().split(" ");
-			vertices.add(links[0]);
-			vertices.add(links[1]);
-			if (graphOut.containsKey(links[0])) {
-				graphOut.get(links[0]).add(links[1]);
-			} else {
-				LinkedList<String> list = new LinkedList<String>();
-				list.add(links[1]);
-				graphOut.put(links[0], list);
-			}
-			if (graphIn.containsKey(links[1])) {
-				graphIn.get(links[1]).add(links[0]);
-			} else {
-				LinkedList<String> list = new LinkedList<String>();
-				list.add(links[0]);
-				graphIn.put(links[1], list);
-			}
+		if (!new File(this.graphFileName).exists()) {
+			throw new FileNotFoundException(this.graphFileName);
 		}
-		scanner.close();
-		if (numOfVertices != vertices.size()) {
-			System.err.println("Warning: Number of vertices is not consistant. Given: " + numOfVertices + "; Real: "
-					+ vertices.size());
+		GraphLoader loader = new GraphLoader(this.graphFileName, Runtime.getRuntime().availableProcessors());
+		try {
+			loader.load();
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read graph from " + this.graphFileName, e);
 		}
-		verticesArray = new String[numOfVertices];
-		int index = 0;
-		for (String key : vertices) {
-			verticesIndex.put(key, index);
-			verticesArray[index] = key;
-			index++;
+		int numOfVertices = loader.numVertices();
+		if (loader.declaredNumVertices() != numOfVertices) {
+			System.err.println("Warning: Number of vertices is not consistant. Given: "
+					+ loader.declaredNumVertices() + "; Real: " + numOfVertices);
 		}
+		numOfEdges = loader.numEdges();
+		firstVertex = loader.firstVertex();
+		verticesIndex = loader.verticesIndex();
+		verticesArray = loader.vertices();
+		outOffsets = loader.outOffsets();
+		outTargets = loader.outTargets();
+		inOffsets = loader.inOffsets();
+		inSources = loader.inSources();
 		return numOfVertices;
 	}
 
 	/**
-	 * Simulate one step of the random walk.
+	 * Give the vertices new indexes by the given strategy and relabel the
+	 * adjacency arrays, the vertex array and the vertex index. Ranks are
+	 * computed with the new indexes, so lookups by page are not affected.
+	 * Prints the time of a step of the random walk before and after.
 	 * 
-	 * @param pN
-	 * @param beta
-	 * @return pN+1
+	 * @param ordering
 	 */
-	private double[] simulateOneStep(double[] pN) {
-		double[] pNPlusOne = new double[numOfVertices];
-		double defaultValue = (1.0 - BETA) / numOfVertices;
-		for (int i = 0; i < numOfVertices; i++) { // Change to numOfVertices
-			pNPlusOne[i] = defaultValue;
+	private void reorderVertices(VertexOrdering.Strategy ordering) {
+		// the first run of either layout also waits for the compiler and the
+		// garbage collector, so only the second one is timed
+		timeOneStep();
+		double timeBefore = timeOneStep();
+		long startTime = System.nanoTime();
+		VertexOrdering vertexOrdering = new VertexOrdering(outOffsets, outTargets, inOffsets, inSources);
+		int[] newIndexOf = vertexOrdering.newIndexes(ordering, firstVertex);
+		int[][] out = VertexOrdering.relabel(outOffsets, outTargets, newIndexOf);
+		int[][] in = VertexOrdering.relabel(inOffsets, inSources, newIndexOf);
+		outOffsets = out[0];
+		outTargets = out[1];
+		inOffsets = in[0];
+		inSources = in[1];
+		String[] newVerticesArray = new String[numOfVertices];
+		for (int v = 0; v < numOfVertices; v++) {
+			newVerticesArray[newIndexOf[v]] = verticesArray[v];
+			verticesIndex.put(verticesArray[v], newIndexOf[v]);
 		}
-		for (String keyC : verticesArray) {
-			System.out.println("Edge: " + keyC + "-->");
-			int index = verticesIndex.get(keyC);
-
-			//Change
-			int numOfEdges = 0;
-			if (graphOut.get(keyC) != null) {
-				numOfEdges = graphOut.get(keyC).size();
-			}
-			//Change End
-			System.out.println("# Outgoing edges: " + numOfEdges);
-			if (numOfEdges == 0) {
-				double value = BETA * pN[index] / numOfVertices;
-				for (int i = 0; i < numOfVertices; i++) {
-					pNPlusOne[i] += value;
-				}
-			} else {
-				double value = BETA * pN[index] / numOfEdges;
-				for (String keyR : graphOut.get(keyC)) {
-					int linkedIndex = verticesIndex.get(keyR);
-					pNPlusOne[linkedIndex] = pNPlusOne[linkedIndex] + value;
-				}
-			}
+		verticesArray = newVerticesArray;
+		if (firstVertex >= 0) {
+			firstVertex = newIndexOf[firstVertex];
 		}
-		double sum = 0;
-		for (int j = 0; j < pN.length; j++) {
-			sum += pN[j];
-			System.out.println(j + ". " + pN[j]);
+		long usedTime = System.nanoTime() - startTime;
+		timeOneStep();
+		double timeAfter = timeOneStep();
+		System.out.printf("Reordering vertices by %s took %d ms. One step took %.3f ms before and %.3f ms after"
+				+ " (median of %d steps, %.2fx speedup).%n", ordering, usedTime / 1000000, timeBefore, timeAfter,
+				TIMED_STEPS, timeBefore / timeAfter);
+	}
+
+	/**
+	 * @return median time in milliseconds of TIMED_STEPS steps of the random
+	 *         walk from the uniform vector, after WARMUP_STEPS steps to warm up
+	 */
+	private double timeOneStep() {
+		double[] pN = new double[numOfVertices];
+		double[] pNPlusOne = new double[numOfVertices];
+		Arrays.fill(pN, 1.0 / numOfVertices);
+		prepareSteps();
+		double[] times = new double[TIMED_STEPS];
+		for (int i = -WARMUP_STEPS; i < TIMED_STEPS; i++) {
+			long startTime = System.nanoTime();
+			simulateOneStep(pN, pNPlusOne);
+			if (i >= 0) {
+				times[i] = (System.nanoTime() - startTime) / 1e6;
+			}
+			double[] tmp = pN;
+			pN = pNPlusOne;
+			pNPlusOne = tmp;
 		}
-		System.out.println("Sum: " + sum);
-		System.out.println();
-		return pNPlusOne;
+		Arrays.sort(times);
+		return times[TIMED_STEPS / 2];
+	}
+
+	/**
+	 * Precompute what the steps of the random walk need from the current
+	 * adjacency arrays.
+	 */
+	private void prepareSteps() {
+		scaledInverseDegrees = RankKernels.scaledInverseDegrees(outOffsets, BETA);
+		danglingVertices = RankKernels.danglingVertices(outOffsets);
+		contributions = new double[numOfVertices];
+	}
+
+	/**
+	 * Simulate one step of the random walk with the fused
+	 * {@link RankKernels}. Every vertex pulls the rank of its in neighbours;
+	 * the rank of pages without out edges is spread over all pages at once.
+	 * 
+	 * @param pN
+	 * @param pNPlusOne
+	 *            filled with pN+1
+	 * @return the NORM of pN+1 - pN
+	 */
+	private double simulateOneStep(double[] pN, double[] pNPlusOne) {
+		rankSum = RankKernels.scaleContributions(pN, scaledInverseDegrees, contributions);
+		double danglingSum = RankKernels.sumAt(pN, danglingVertices);
+		double defaultValue = (1.0 - BETA) / numOfVertices + BETA * danglingSum / numOfVertices;
+		return RankKernels.gatherRanks(inOffsets, inSources, contributions, defaultValue, pN, pNPlusOne);
 	}
 
 	/**
@@ -306,35 +404,145 @@ public class PageRank {
 		boolean converged = false;
 		double defaultValue = 1.0 / numOfVertices;
 		double[] pN = new double[numOfVertices];
-		double[] pNPlusOne = null;
+		double[] pNPlusOne = new double[numOfVertices];
 		for (int i = 0; i < numOfVertices; i++)
 			pN[i] = defaultValue;
+		prepareSteps();
 		while (!converged) {
-			System.out.println("Step " + numberOfSteps);
-			pNPlusOne = simulateOneStep(pN);
-			if (computeNormDifference(pNPlusOne, pN) <= epsilon) {
+			if (simulateOneStep(pN, pNPlusOne) <= epsilon) {
 				converged = true;
 			}
+			System.out.println("Step " + numberOfSteps + "; Sum: " + rankSum);
+			double[] tmp = pN;
 			pN = pNPlusOne;
+			pNPlusOne = tmp;
 			numberOfSteps++;
+			numOfUpdates += numOfVertices;
 		}
 		System.out.println("It takes " + numberOfSteps + " steps to compute the rank vector.");
 		return pN;
 	}
 
 	/**
-	 * Compute the sum absolute values of all entries of pNPlusOne[i]-pN[i]
+	 * Compute the Rank vector adaptively, in the manner of Kamvar et al.: a
+	 * page whose rank changed by at most FREEZE_TOLERANCE * epsilon times its
+	 * rank in two steps in a row is frozen and dropped from the worklist of
+	 * active pages, and later steps only update the active pages. Frozen pages keep passing
+	 * their last rank to their out neighbours. As the ranks sum to 1, the
+	 * frozen pages together moved by at most FREEZE_TOLERANCE * epsilon in
+	 * the step they froze.
 	 * 
-	 * @param pNPlusOne
-	 * @param pN
-	 * @return the NORM value
+	 * The NORM over all pages is estimated by the NORM of the active pages
+	 * plus the drift of the frozen pages, which are assumed to keep moving by
+	 * BETA times their last change in every step. All pages are updated and
+	 * become active again when the estimate for the next step, which is
+	 * expected to shrink by as much as this one did, is at most epsilon, or every
+	 * FULL_SWEEP_INTERVAL steps, and the computation only stops after a step
+	 * over all pages whose NORM is at most epsilon.
+	 * 
+	 * @return the Rank vector
 	 */
-	private double computeNormDifference(double[] pNPlusOne, double[] pN) {
-		double norm = 0;
-		for (int i = 0; i < pN.length; i++) {
-			norm += Math.abs(pNPlusOne[i] - pN[i]);
+	private double[] computeAdaptiveRank() {
+		double[] pN = new double[numOfVertices];
+		Arrays.fill(pN, 1.0 / numOfVertices);
+		prepareSteps();
+		int[] active = new int[numOfVertices];
+		int[] frozen = new int[numOfVertices];
+		// change of every page in the last step it was updated
+		double[] lastChange = new double[numOfVertices];
+		Arrays.fill(lastChange, Double.MAX_VALUE);
+		int numOfActive = 0;
+		numOfUpdates = 0;
+		boolean fullSweep = true;
+		int stepsSinceFullSweep = 0;
+		// rank of the frozen dangling pages, which does not change until the
+		// next full sweep
+		double frozenDanglingSum = 0;
+		// change the frozen pages are expected to have in the next step, and
+		// their drift from their frozen ranks so far
+		double frozenChange = 0;
+		double frozenDrift = 0;
+		double lastEstimatedNorm = 0;
+		while (true) {
+			double danglingSum;
+			if (fullSweep) {
+				for (int v = 0; v < numOfVertices; v++) {
+					active[v] = v;
+				}
+				numOfActive = numOfVertices;
+				stepsSinceFullSweep = 0;
+				rankSum = RankKernels.scaleContributions(pN, scaledInverseDegrees, contributions);
+				danglingSum = RankKernels.sumAt(pN, danglingVertices);
+				frozenDanglingSum = 0;
+				frozenChange = 0;
+				frozenDrift = 0;
+			} else {
+				danglingSum = frozenDanglingSum;
+				for (int i = 0; i < numOfActive; i++) {
+					int v = active[i];
+					contributions[v] = pN[v] * scaledInverseDegrees[v];
+					if (outOffsets[v] == outOffsets[v + 1]) {
+						danglingSum += pN[v];
+					}
+				}
+			}
+			double defaultValue = (1.0 - BETA) / numOfVertices + BETA * danglingSum / numOfVertices;
+			// contributions hold the old ranks, so pN can be updated in place
+			double norm = 0;
+			double activeNorm = 0;
+			int numOfStillActive = 0;
+			int numOfFrozen = 0;
+			for (int i = 0; i < numOfActive; i++) {
+				int v = active[i];
+				double rank = defaultValue;
+				for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+					rank += contributions[inSources[e]];
+				}
+				double change = Math.abs(rank - pN[v]);
+				norm += change;
+				// a change that is small in one step only may be a change of
+				// sign, so a page has to settle in two steps in a row
+				double settledChange = Math.max(change, lastChange[v]);
+				lastChange[v] = change;
+				if (settledChange > FREEZE_TOLERANCE * epsilon * pN[v]) {
+					active[numOfStillActive++] = v;
+					activeNorm += change;
+				} else {
+					frozen[numOfFrozen++] = v;
+					frozenChange += settledChange;
+					if (outOffsets[v] == outOffsets[v + 1]) {
+						frozenDanglingSum += rank;
+					}
+				}
+				pN[v] = rank;
+			}
+			// frozen pages pass on their final rank, like the dangling term
+			for (int i = 0; i < numOfFrozen; i++) {
+				int v = frozen[i];
+				contributions[v] = pN[v] * scaledInverseDegrees[v];
+			}
+			numOfUpdates += numOfActive;
+			numberOfSteps++;
+			stepsSinceFullSweep++;
+			if (fullSweep) {
+				System.out.println("Step " + (numberOfSteps - 1) + "; Sum: " + rankSum + "; full sweep");
+				if (norm <= epsilon) {
+					break;
+				}
+			}
+			numOfActive = numOfStillActive;
+			frozenChange *= BETA;
+			frozenDrift += frozenChange;
+			double estimatedNorm = fullSweep ? norm : activeNorm + frozenDrift;
+			// the next step shrinks the NORM about as much as this one did
+			double nextNorm = lastEstimatedNorm == 0 ? estimatedNorm
+					: estimatedNorm * Math.min(1, estimatedNorm / lastEstimatedNorm);
+			lastEstimatedNorm = estimatedNorm;
+			fullSweep = nextNorm <= epsilon || numOfActive == 0 || stepsSinceFullSweep >= FULL_SWEEP_INTERVAL;
 		}
-		return norm;
+		System.out.println("It takes " + numberOfSteps + " steps to compute the rank vector adaptively, with "
+				+ numOfUpdates + " page updates.");
+		return pN;
 	}
 
 	/**
@@ -349,7 +557,7 @@ public class PageRank {
 	 */
 	public void outputTopKResult(int k) throws FileNotFoundException {
 		File outputFile = new File("Result_" + this.graphFileName);
-		PrintWriter writer = new PrintWriter(outputFile);
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
 
 		if (topKInDegrees == null || topKInDegrees.length == 0 || topKOutDegrees == null || topKOutDegrees.length == 0
 				|| topKRanks == null || topKRanks.length == 0) {
@@ -415,6 +623,8 @@ public class PageRank {
 
 	/**
 	 * Compute the Jaccard similarities between the pages of 2 given array.
+	 * Pages are compared as sorted sets of vertex indexes; pages that are not
+	 * in the graph get indexes after the vertices.
 	 * 
 	 * @param pages1
 	 * @param pages2
@@ -423,34 +633,62 @@ public class PageRank {
 		if (pages1 == null || pages1.length == 0 || pages2 == null || pages2.length == 0) {
 			throw new IllegalArgumentException("The list is empty.");
 		}
-		HashMap<String, Integer> terms = new HashMap<String, Integer>();
-		Integer index = 0;
-		for (String s1 : pages1) {
-			if (!terms.containsKey(s1)) {
-				terms.put(s1, index++);
-			}
-		}
-		for (String s2 : pages2) {
-			if (!terms.containsKey(s2)) {
-				terms.put(s2, index++);
+		HashMap<String, Integer> unknownPages = new HashMap<String, Integer>();
+		int[] set1 = LinkSimilarity.sortedSet(indexesOf(pages1, unknownPages));
+		int[] set2 = LinkSimilarity.sortedSet(indexesOf(pages2, unknownPages));
+		return LinkSimilarity.jaccard(set1, set2);
+	}
+
+	private int[] indexesOf(String[] pages, HashMap<String, Integer> unknownPages) {
+		int[] indexes = new int[pages.length];
+		for (int i = 0; i < pages.length; i++) {
+			Integer index = verticesIndex.get(pages[i]);
+			if (index == null) {
+				index = unknownPages.get(pages[i]);
+				if (index == null) {
+					index = numOfVertices + unknownPages.size();
+					unknownPages.put(pages[i], index);
+				}
 			}
+			indexes[i] = index;
 		}
-		int numOfTerms = terms.size();
-		int[] sig1 = new int[numOfTerms];
-		int[] sig2 = new int[numOfTerms];
-		for (String s1 : pages1) {
-			sig1[terms.get(s1)] = 1;
+		return indexes;
+	}
+
+	/**
+	 * Find the pairs of pages whose out links have a Jaccard similarity of at
+	 * least the given threshold, with MinHash signatures of the out links and
+	 * banding (see {@link LinkSimilarity}). Pages with the same out links are
+	 * listed once as a group, and only the first page of a group is paired
+	 * with other pages.
+	 * 
+	 * @param threshold
+	 * @param numOfBands
+	 * @param rowsPerBand
+	 * @return lines "page1 page2 similarity", then lines "page1 page2 ...
+	 *         pageN 1.0" of the groups of pages with the same out links
+	 */
+	public String[] similarOutLinks(double threshold, int numOfBands, int rowsPerBand) {
+		LinkSimilarity similarity = new LinkSimilarity(outOffsets, outTargets, numOfBands, rowsPerBand);
+		ArrayList<LinkSimilarity.SimilarPair> pairs = similarity.similarPairs(threshold);
+		if (similarity.numOfSkippedPairs() > 0) {
+			System.err.println("Warning: " + similarity.numOfSkippedPairs()
+					+ " candidate pairs of large buckets were not compared.");
 		}
-		for (String s2 : pages2) {
-			sig2[terms.get(s2)] = 1;
+		ArrayList<int[]> groups = threshold <= 1 ? similarity.identicalGroups() : new ArrayList<int[]>();
+		String[] result = new String[pairs.size() + groups.size()];
+		for (int i = 0; i < pairs.size(); i++) {
+			LinkSimilarity.SimilarPair pair = pairs.get(i);
+			result[i] = verticesArray[pair.first()] + " " + verticesArray[pair.second()] + " " + pair.similarity();
 		}
-		int intersection = 0;
-		for (int i = 0; i < numOfTerms; i++) {
-			if (sig1[i] == 1 && sig2[i] == 1) {
-				intersection++;
+		for (int i = 0; i < groups.size(); i++) {
+			StringBuilder line = new StringBuilder();
+			for (int v : groups.get(i)) {
+				line.append(verticesArray[v]).append(' ');
 			}
+			result[pairs.size() + i] = line.append(1.0).toString();
 		}
-		return ((double) intersection) / numOfTerms;
+		return result;
 	}
 
 	/**
@@ -0,0 +1,421 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One worker process of {@link PartitionedPageRank}. The worker owns a range
+ * of vertex indexes: it keeps their ranks and their in edges, and computes
+ * their next ranks in every step of the random walk.
+ *
+ * Before the first step every worker tells each peer which of the peer's
+ * vertices it needs (sorted indexes, delta and varint encoded). In every step
+ * each worker then sends one batch per peer with the contributions of the
+ * requested vertices, each value encoded as the varint of its bits XOR the
+ * bits of the value sent in the previous step, which shrinks as the ranks
+ * converge. The coordinator sums the residuals and the dangling rank of all
+ * workers and decides when to stop.
+ *
+ * Usage: java PageRankWorker coordinatorHost coordinatorPort
+ */
+public class PageRankWorker {
+
+	private final double BETA = 0.85;
+
+	private Socket coordinator;
+	private DataInputStream fromCoordinator;
+	private DataOutputStream toCoordinator;
+	private ServerSocket peerServer;
+	private DataOutputStream[] toPeers;
+
+	private int workerId;
+	private int numOfWorkers;
+	private int numOfVertices;
+	/* Index of the first vertex owned by this worker */
+	private int firstVertex;
+	private int numOfOwned;
+	private int[] outDegrees;
+	/* In edges of owned vertices as CSR: sources of vertex v are positions
+	 * inPositions[inOffsets[v] .. inOffsets[v + 1]) of contributions */
+	private int[] inOffsets;
+	private int[] inPositions;
+	/* Contributions of owned vertices, followed by those received from each
+	 * peer in the order of imports[peer] */
+	private double[] contributions;
+	/* Sorted indexes of the vertices needed from each peer */
+	private int[][] imports;
+	/* Position in contributions of the first vertex received from each peer */
+	private int[] importOffsets;
+	/* Local indexes of the vertices requested by each peer */
+	private int[][] exports;
+	/* Bits of the values sent to each peer in the previous step */
+	private long[][] lastSent;
+	private BlockingQueue<int[]> requests;
+	private BlockingQueue<double[]>[] received;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 2) {
+			System.err.println("Usage: java PageRankWorker coordinatorHost coordinatorPort");
+			return;
+		}
+		PageRankWorker worker = new PageRankWorker(args[0], Integer.parseInt(args[1]));
+		worker.run();
+	}
+
+	/**
+	 * Connect to the coordinator and receive the owned part of the graph.
+	 *
+	 * @param host
+	 *            host of the coordinator
+	 * @param port
+	 *            port of the coordinator
+	 * @throws IOException
+	 */
+	public PageRankWorker(String host, int port) throws IOException {
+		peerServer = new ServerSocket(0);
+		coordinator = new Socket(host, port);
+		coordinator.setTcpNoDelay(true);
+		fromCoordinator = new DataInputStream(new BufferedInputStream(coordinator.getInputStream(),
+				EdgeBlocks.BUFFER_SIZE));
+		toCoordinator = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+		toCoordinator.writeInt(peerServer.getLocalPort());
+		toCoordinator.flush();
+		readPartition();
+	}
+
+	/**
+	 * Connect to the peers, then run the random walk until the coordinator
+	 * stops it and send back the ranks of the owned vertices.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run() throws IOException, InterruptedException {
+		connectPeers();
+		double[] pN = new double[numOfOwned];
+		double[] pNPlusOne = new double[numOfOwned];
+		Arrays.fill(pN, 1.0 / numOfVertices);
+		double norm = Double.POSITIVE_INFINITY;
+		while (true) {
+			double danglingSum = 0;
+			for (int i = 0; i < numOfOwned; i++) {
+				if (outDegrees[i] == 0) {
+					danglingSum += pN[i];
+					contributions[i] = 0;
+				} else {
+					contributions[i] = BETA * pN[i] / outDegrees[i];
+				}
+			}
+			toCoordinator.writeDouble(norm);
+			toCoordinator.writeDouble(danglingSum);
+			toCoordinator.flush();
+			if (fromCoordinator.readBoolean()) {
+				break;
+			}
+			double globalDanglingSum = fromCoordinator.readDouble();
+			exchangeContributions();
+			double defaultValue = (1.0 - BETA) / numOfVertices + BETA * globalDanglingSum / numOfVertices;
+			norm = 0;
+			for (int v = 0; v < numOfOwned; v++) {
+				double rank = defaultValue;
+				for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+					rank += contributions[inPositions[e]];
+				}
+				pNPlusOne[v] = rank;
+				norm += Math.abs(rank - pN[v]);
+			}
+			double[] tmp = pN;
+			pN = pNPlusOne;
+			pNPlusOne = tmp;
+		}
+		for (int i = 0; i < numOfOwned; i++) {
+			toCoordinator.writeDouble(pN[i]);
+		}
+		toCoordinator.flush();
+		close();
+	}
+
+	/**
+	 * Read the owned range, its out degrees and its in edges from the
+	 * coordinator, and lay out the contributions needed from the peers.
+	 *
+	 * @throws IOException
+	 */
+	private void readPartition() throws IOException {
+		workerId = fromCoordinator.readInt();
+		numOfWorkers = fromCoordinator.readInt();
+		numOfVertices = fromCoordinator.readInt();
+		int verticesPerWorker = fromCoordinator.readInt();
+		firstVertex = workerId * verticesPerWorker;
+		numOfOwned = fromCoordinator.readInt();
+		outDegrees = new int[numOfOwned];
+		for (int i = 0; i < numOfOwned; i++) {
+			outDegrees[i] = fromCoordinator.readInt();
+		}
+		int numOfInEdges = fromCoordinator.readInt();
+		int[] sources = new int[numOfInEdges];
+		int[] destinations = new int[numOfInEdges];
+		int[] numOfImports = new int[numOfWorkers];
+		for (int e = 0; e < numOfInEdges; e++) {
+			sources[e] = fromCoordinator.readInt();
+			destinations[e] = fromCoordinator.readInt() - firstVertex;
+			numOfImports[sources[e] / verticesPerWorker]++;
+		}
+
+		// sorted distinct remote sources per owner
+		imports = new int[numOfWorkers][];
+		for (int q = 0; q < numOfWorkers; q++) {
+			imports[q] = new int[q == workerId ? 0 : numOfImports[q]];
+			numOfImports[q] = 0;
+		}
+		for (int e = 0; e < numOfInEdges; e++) {
+			int q = sources[e] / verticesPerWorker;
+			if (q != workerId) {
+				imports[q][numOfImports[q]++] = sources[e];
+			}
+		}
+		importOffsets = new int[numOfWorkers];
+		int numOfContributions = numOfOwned;
+		for (int q = 0; q < numOfWorkers; q++) {
+			imports[q] = distinctSorted(imports[q]);
+			importOffsets[q] = numOfContributions;
+			numOfContributions += imports[q].length;
+		}
+		contributions = new double[numOfContributions];
+
+		// in edges grouped by destination
+		inOffsets = new int[numOfOwned + 1];
+		for (int e = 0; e < numOfInEdges; e++) {
+			inOffsets[destinations[e] + 1]++;
+		}
+		for (int v = 0; v < numOfOwned; v++) {
+			inOffsets[v + 1] += inOffsets[v];
+		}
+		int[] next = Arrays.copyOf(inOffsets, numOfOwned);
+		inPositions = new int[numOfInEdges];
+		for (int e = 0; e < numOfInEdges; e++) {
+			int q = sources[e] / verticesPerWorker;
+			int position;
+			if (q == workerId) {
+				position = sources[e] - firstVertex;
+			} else {
+				position = importOffsets[q] + Arrays.binarySearch(imports[q], sources[e]);
+			}
+			inPositions[next[destinations[e]]++] = position;
+		}
+
+		String[] hosts = new String[numOfWorkers];
+		int[] ports = new int[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			hosts[q] = fromCoordinator.readUTF();
+			ports[q] = fromCoordinator.readInt();
+		}
+		openPeers(hosts, ports);
+	}
+
+	/**
+	 * @param values
+	 * @return the distinct values of the given array in ascending order
+	 */
+	private static int[] distinctSorted(int[] values) {
+		Arrays.sort(values);
+		int size = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (size == 0 || values[size - 1] != values[i]) {
+				values[size++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Open a connection to every peer and accept one from every peer. Each
+	 * incoming connection gets a thread that reads the messages of that peer,
+	 * so sending never blocks on a peer that is sending too.
+	 *
+	 * @param hosts
+	 * @param ports
+	 * @throws IOException
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void openPeers(String[] hosts, int[] ports) throws IOException {
+		requests = new ArrayBlockingQueue<int[]>(Math.max(1, numOfWorkers));
+		received = new BlockingQueue[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			received[q] = new ArrayBlockingQueue<double[]>(1);
+		}
+		Thread acceptor = new Thread(() -> {
+			try {
+				for (int i = 0; i < numOfWorkers - 1; i++) {
+					Socket socket = peerServer.accept();
+					socket.setTcpNoDelay(true);
+					Thread reader = new Thread(() -> readPeer(socket));
+					reader.setDaemon(true);
+					reader.start();
+				}
+			} catch (IOException e) {
+				System.err.println("Worker " + workerId + " failed to accept a peer: " + e.getMessage());
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		toPeers = new DataOutputStream[numOfWorkers];
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId) {
+				Socket socket = new Socket(hosts[q], ports[q]);
+				socket.setTcpNoDelay(true);
+				toPeers[q] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+				toPeers[q].writeInt(workerId);
+			}
+		}
+	}
+
+	/**
+	 * Read the messages of one peer: first the vertices it needs from this
+	 * worker, then one batch of contributions per step.
+	 *
+	 * @param socket
+	 */
+	private void readPeer(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			int peer = in.readInt();
+			int[] request = new int[in.readInt() + 1];
+			request[0] = peer;
+			int vertex = 0;
+			for (int i = 1; i < request.length; i++) {
+				vertex += (int) readVarLong(in);
+				request[i] = vertex;
+			}
+			requests.put(request);
+			long[] lastBits = new long[imports[peer].length];
+			while (true) {
+				int count = in.readInt();
+				double[] values = new double[count];
+				for (int i = 0; i < count; i++) {
+					lastBits[i] ^= readVarLong(in);
+					values[i] = Double.longBitsToDouble(lastBits[i]);
+				}
+				received[peer].put(values);
+			}
+		} catch (EOFException e) {
+			// the peer is done
+		} catch (IOException | InterruptedException e) {
+			System.err.println("Worker " + workerId + " lost a peer: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Tell every peer which of its vertices this worker needs, and wait for
+	 * the requests of all peers.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void connectPeers() throws IOException, InterruptedException {
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId) {
+				toPeers[q].writeInt(imports[q].length);
+				int previous = 0;
+				for (int vertex : imports[q]) {
+					writeVarLong(toPeers[q], vertex - previous);
+					previous = vertex;
+				}
+				toPeers[q].flush();
+			}
+		}
+		exports = new int[numOfWorkers][];
+		lastSent = new long[numOfWorkers][];
+		for (int i = 0; i < numOfWorkers - 1; i++) {
+			int[] request = requests.take();
+			int peer = request[0];
+			exports[peer] = new int[request.length - 1];
+			for (int j = 1; j < request.length; j++) {
+				exports[peer][j - 1] = request[j] - firstVertex;
+			}
+			lastSent[peer] = new long[exports[peer].length];
+		}
+	}
+
+	/**
+	 * Send the contributions requested by every peer as one batch per peer,
+	 * then copy in the batches received from the peers.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void exchangeContributions() throws IOException, InterruptedException {
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId) {
+				DataOutputStream out = toPeers[q];
+				int[] export = exports[q];
+				long[] last = lastSent[q];
+				out.writeInt(export.length);
+				for (int i = 0; i < export.length; i++) {
+					long bits = Double.doubleToRawLongBits(contributions[export[i]]);
+					writeVarLong(out, bits ^ last[i]);
+					last[i] = bits;
+				}
+				out.flush();
+			}
+		}
+		for (int q = 0; q < numOfWorkers; q++) {
+			if (q != workerId) {
+				double[] values = received[q].take();
+				System.arraycopy(values, 0, contributions, importOffsets[q], values.length);
+			}
+		}
+	}
+
+	/**
+	 * Write the given value 7 bits at a time, lowest bits first.
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Read a value written by {@link #writeVarLong(DataOutputStream, long)}.
+	 *
+	 * @param in
+	 * @return the value
+	 * @throws IOException
+	 */
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	private void close() throws IOException {
+		for (DataOutputStream out : toPeers) {
+			if (out != null) {
+				out.close();
+			}
+		}
+		peerServer.close();
+		coordinator.close();
+	}
+}
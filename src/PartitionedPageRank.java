@@ -0,0 +1,263 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * This class computes the same page ranks as {@link PageRank} with the vertex
+ * set split across several {@link PageRankWorker} processes. The coordinator
+ * splits the edge file into destination-partitioned {@link EdgeBlocks}, sends
+ * worker p the out degrees of its vertex range and block p (its in edges),
+ * and in every step sums the residuals and the dangling rank reported by the
+ * workers. The workers exchange the contributions crossing their ranges
+ * directly with each other over TCP.
+ *
+ * The workers are either started by the coordinator as local JVMs, or started
+ * by hand with "java PageRankWorker coordinatorHost port" on any host.
+ */
+public class PartitionedPageRank {
+
+	private double epsilon;
+	private EdgeBlocks blocks;
+	private int numOfWorkers;
+	private Socket[] workers;
+	private DataInputStream[] fromWorkers;
+	private DataOutputStream[] toWorkers;
+	private Process[] processes;
+	private double[] rankVector;
+	private int numberOfSteps = 0;
+
+	/**
+	 * Rank the graph with the given number of worker JVMs started on this
+	 * host.
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @param numOfWorkers
+	 *            Number of worker processes.
+	 * @throws IOException
+	 */
+	public PartitionedPageRank(String fileName, double epsilon, int numOfWorkers) throws IOException {
+		this(fileName, epsilon, numOfWorkers, 0, true);
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 *            Name of a file that contains the edges of the graph.
+	 * @param epsilon
+	 *            Approximation parameter for pagerank.
+	 * @param numOfWorkers
+	 *            Number of worker processes.
+	 * @param port
+	 *            Port the workers connect to; 0 picks a free one.
+	 * @param spawnWorkers
+	 *            true to start the workers as local JVMs, false to wait for
+	 *            workers started by hand.
+	 * @throws IOException
+	 */
+	public PartitionedPageRank(String fileName, double epsilon, int numOfWorkers, int port, boolean spawnWorkers)
+			throws IOException {
+		if (numOfWorkers <= 0) {
+			throw new IllegalArgumentException("Number of workers should be greater than 0.");
+		}
+		this.epsilon = epsilon;
+		this.blocks = new EdgeBlocks(fileName, numOfWorkers);
+		// every worker owns a non-empty range of vertices
+		this.numOfWorkers = blocks.numBlocks();
+		if (this.numOfWorkers < numOfWorkers) {
+			System.out.println("The graph has vertices for only " + this.numOfWorkers + " workers.");
+		}
+		ServerSocket server = new ServerSocket(port);
+		try {
+			if (spawnWorkers) {
+				startWorkers(server.getLocalPort());
+			} else {
+				System.out.println("Waiting for " + this.numOfWorkers + " workers on port " + server.getLocalPort()
+						+ "......");
+			}
+			acceptWorkers(server);
+		} finally {
+			server.close();
+		}
+		try {
+			this.rankVector = computeRank();
+		} finally {
+			for (Socket worker : workers) {
+				worker.close();
+			}
+			waitForWorkers();
+			blocks.delete();
+		}
+	}
+
+	/**
+	 * gets name of vertex of the graph as parameter and returns its page rank
+	 *
+	 * @param url
+	 * @return
+	 */
+	public double pageRankOf(String url) {
+		return rankVector[blocks.indexOf(url)];
+	}
+
+	/**
+	 * @return the number of edges in the graph
+	 */
+	public long numEdges() {
+		return blocks.numEdges();
+	}
+
+	/**
+	 * @return the number of steps the random walk took to converge
+	 */
+	public int numSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * gets an integer k as parameter and returns an array (of strings) of pages
+	 * with top k page ranks.
+	 *
+	 * @param k
+	 * @return top k rank pages
+	 */
+	public String[] topKPageRank(int k) {
+		return OutOfCorePageRank.topK(rankVector, blocks.vertices(), k);
+	}
+
+	/**
+	 * Start the workers as JVMs on this host with the same class path.
+	 *
+	 * @param port
+	 * @throws IOException
+	 */
+	private void startWorkers(int port) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classPath = System.getProperty("java.class.path");
+		processes = new Process[numOfWorkers];
+		for (int p = 0; p < numOfWorkers; p++) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", classPath, "PageRankWorker", "localhost",
+					String.valueOf(port));
+			builder.inheritIO();
+			processes[p] = builder.start();
+		}
+	}
+
+	private void waitForWorkers() {
+		if (processes == null) {
+			return;
+		}
+		for (Process process : processes) {
+			try {
+				process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Accept every worker, then send each its part of the graph and the
+	 * addresses of its peers.
+	 *
+	 * @param server
+	 * @throws IOException
+	 */
+	private void acceptWorkers(ServerSocket server) throws IOException {
+		workers = new Socket[numOfWorkers];
+		fromWorkers = new DataInputStream[numOfWorkers];
+		toWorkers = new DataOutputStream[numOfWorkers];
+		String[] hosts = new String[numOfWorkers];
+		int[] ports = new int[numOfWorkers];
+		for (int p = 0; p < numOfWorkers; p++) {
+			workers[p] = server.accept();
+			workers[p].setTcpNoDelay(true);
+			fromWorkers[p] = new DataInputStream(new BufferedInputStream(workers[p].getInputStream()));
+			toWorkers[p] = new DataOutputStream(new BufferedOutputStream(workers[p].getOutputStream(),
+					EdgeBlocks.BUFFER_SIZE));
+			hosts[p] = workers[p].getInetAddress().getHostAddress();
+			ports[p] = fromWorkers[p].readInt();
+		}
+		int verticesPerWorker = blocks.verticesPerBlock();
+		int[] outDegrees = blocks.outDegrees();
+		for (int p = 0; p < numOfWorkers; p++) {
+			DataOutputStream out = toWorkers[p];
+			int first = p * verticesPerWorker;
+			int numOfOwned = Math.max(0, Math.min(blocks.numVertices(), first + verticesPerWorker) - first);
+			out.writeInt(p);
+			out.writeInt(numOfWorkers);
+			out.writeInt(blocks.numVertices());
+			out.writeInt(verticesPerWorker);
+			out.writeInt(numOfOwned);
+			for (int i = first; i < first + numOfOwned; i++) {
+				out.writeInt(outDegrees[i]);
+			}
+			File block = blocks.blockFile(p);
+			out.writeInt((int) (block.length() / 8));
+			FileInputStream in = new FileInputStream(block);
+			byte[] buffer = new byte[1 << 16];
+			int length = in.read(buffer);
+			while (length > 0) {
+				out.write(buffer, 0, length);
+				length = in.read(buffer);
+			}
+			in.close();
+			for (int q = 0; q < numOfWorkers; q++) {
+				out.writeUTF(hosts[q]);
+				out.writeInt(ports[q]);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Drive the random walk: in every step collect the residual of the last
+	 * step and the dangling rank of every worker, and either stop the workers
+	 * or send them the total dangling rank. Then collect the ranks.
+	 *
+	 * @return the Rank vector
+	 * @throws IOException
+	 */
+	private double[] computeRank() throws IOException {
+		while (true) {
+			double norm = 0;
+			double danglingSum = 0;
+			for (int p = 0; p < numOfWorkers; p++) {
+				norm += fromWorkers[p].readDouble();
+				danglingSum += fromWorkers[p].readDouble();
+			}
+			boolean converged = norm <= epsilon;
+			for (int p = 0; p < numOfWorkers; p++) {
+				toWorkers[p].writeBoolean(converged);
+				if (!converged) {
+					toWorkers[p].writeDouble(danglingSum);
+				}
+				toWorkers[p].flush();
+			}
+			if (converged) {
+				break;
+			}
+			numberOfSteps++;
+		}
+		double[] pN = new double[blocks.numVertices()];
+		int verticesPerWorker = blocks.verticesPerBlock();
+		for (int p = 0; p < numOfWorkers; p++) {
+			int first = p * verticesPerWorker;
+			int last = Math.min(blocks.numVertices(), first + verticesPerWorker);
+			for (int i = first; i < last; i++) {
+				pN[i] = fromWorkers[p].readDouble();
+			}
+		}
+		System.out.println("It takes " + numberOfSteps + " steps to compute the rank vector with " + numOfWorkers
+				+ " workers.");
+		return pN;
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+
+/**
+ * Perfect hash index from the titles of a graph to their vertex indexes, built
+ * by hash and displace: keys are hashed into small buckets, and for every
+ * bucket, largest first, a displacement is searched that sends all its keys to
+ * free slots of the table. A lookup is two hashes of the title, two array
+ * reads and one comparison with the stored title, without collisions to
+ * follow.
+ */
+public class PerfectHashIndex {
+
+	/* Average number of keys per bucket */
+	private static final int KEYS_PER_BUCKET = 4;
+	/* Displacements tried for a bucket before the build starts over */
+	private static final int MAX_DISPLACEMENT = 1 << 16;
+	/* Builds tried before giving up */
+	private static final int MAX_BUILDS = 16;
+
+	private String[] keys;
+	/* Seed of the bucket hash; the displacements are added to it */
+	private int seed = 0;
+	private int[] displacements;
+	/* Index of the key in each slot, -1 for free slots */
+	private int[] table;
+
+	/**
+	 * @param keys
+	 *            distinct keys; the index of a key is its position
+	 * @throws IllegalArgumentException
+	 *             if a key is repeated
+	 */
+	public PerfectHashIndex(String[] keys) {
+		this.keys = keys;
+		int numOfBuckets = Math.max(1, keys.length / KEYS_PER_BUCKET);
+		int tableSize = keys.length + keys.length / 4 + 1;
+		for (int build = 0; build < MAX_BUILDS; build++) {
+			this.displacements = new int[numOfBuckets];
+			this.table = new int[tableSize];
+			Arrays.fill(table, -1);
+			if (build(numOfBuckets)) {
+				return;
+			}
+			seed += 0x61C88647;
+			tableSize += keys.length / 8 + 1;
+		}
+		throw new IllegalStateException("No perfect hash found for " + keys.length + " keys.");
+	}
+
+	/**
+	 * @param key
+	 * @return index of the given key, or -1 if it is not indexed
+	 */
+	public int indexOf(String key) {
+		int bucket = slot(key, seed, displacements.length);
+		int index = table[slot(key, seed + displacements[bucket], table.length)];
+		if (index >= 0 && keys[index].equals(key)) {
+			return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Place every key in the table.
+	 * 
+	 * @return false if a bucket found no displacement
+	 */
+	private boolean build(int numOfBuckets) {
+		// keys of every bucket, as a linked list through next
+		int[] heads = new int[numOfBuckets];
+		int[] sizes = new int[numOfBuckets];
+		int[] next = new int[keys.length];
+		Arrays.fill(heads, -1);
+		for (int i = 0; i < keys.length; i++) {
+			int bucket = slot(keys[i], seed, numOfBuckets);
+			next[i] = heads[bucket];
+			heads[bucket] = i;
+			sizes[bucket]++;
+		}
+		Integer[] buckets = new Integer[numOfBuckets];
+		for (int b = 0; b < numOfBuckets; b++) {
+			buckets[b] = b;
+		}
+		Arrays.sort(buckets, (a, b) -> sizes[b] - sizes[a]);
+		int[] slots = new int[16];
+		for (int bucket : buckets) {
+			if (sizes[bucket] == 0) {
+				break;
+			}
+			if (slots.length < sizes[bucket]) {
+				slots = new int[sizes[bucket]];
+			}
+			checkDistinct(heads[bucket], next);
+			int d = 1;
+			while (!tryDisplacement(heads[bucket], next, d, slots)) {
+				if (++d > MAX_DISPLACEMENT) {
+					return false;
+				}
+			}
+			displacements[bucket] = d;
+		}
+		return true;
+	}
+
+	/**
+	 * Equal keys hash to the same bucket and to the same slot with every
+	 * displacement, so they are looked for among the keys of each bucket.
+	 */
+	private void checkDistinct(int head, int[] next) {
+		for (int i = head; i >= 0; i = next[i]) {
+			for (int j = next[i]; j >= 0; j = next[j]) {
+				if (keys[i].equals(keys[j])) {
+					throw new IllegalArgumentException("Key " + keys[i] + " is repeated at " + j + " and " + i + ".");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Place the keys of a bucket with the given displacement if all of them
+	 * land in distinct free slots.
+	 */
+	private boolean tryDisplacement(int head, int[] next, int displacement, int[] slots) {
+		int count = 0;
+		for (int i = head; i >= 0; i = next[i]) {
+			int slot = slot(keys[i], seed + displacement, table.length);
+			if (table[slot] >= 0) {
+				return false;
+			}
+			for (int j = 0; j < count; j++) {
+				if (slots[j] == slot) {
+					return false;
+				}
+			}
+			slots[count++] = slot;
+		}
+		count = 0;
+		for (int i = head; i >= 0; i = next[i]) {
+			table[slots[count++]] = i;
+		}
+		return true;
+	}
+
+	/**
+	 * @return hash of the key with the given seed, reduced to [0, size)
+	 */
+	private static int slot(String key, int seed, int size) {
+		int h = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+		for (int i = 0; i < key.length(); i++) {
+			h = (h ^ key.charAt(i)) * 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return (h & 0x7FFFFFFF) % size;
+	}
+}
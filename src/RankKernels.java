@@ -0,0 +1,130 @@
+/**
+ * This class has the dense loops of a step of the random walk, fused so that
+ * a step reads the rank vector twice instead of four times (fill the teleport
+ * term, scale by out degree, L1 norm, sum check). The rank a vertex passes
+ * along each out edge is BETA * rank / outDegree; the division is replaced by
+ * a multiplication with a precomputed vector of BETA / outDegree.
+ *
+ * The two loops over every vertex run on the {@link DenseRankKernels} chosen
+ * when the class is loaded: VectorRankKernels, written with the incubating
+ * Vector API, if it was compiled and the module is present (see its comment
+ * for the javac and java flags), and {@link ScalarRankKernels} otherwise.
+ * "-DrankKernels=scalar" forces the scalar loops.
+ */
+public class RankKernels {
+
+	private static final DenseRankKernels KERNELS = loadKernels();
+
+	private RankKernels() {
+	}
+
+	/**
+	 * @return the vector kernels if they can be loaded and are not turned
+	 *         off, the scalar kernels otherwise
+	 */
+	private static DenseRankKernels loadKernels() {
+		if (!"scalar".equals(System.getProperty("rankKernels"))) {
+			try {
+				Object kernels = Class.forName("VectorRankKernels").getDeclaredConstructor().newInstance();
+				return (DenseRankKernels) kernels;
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not compiled, or started without --add-modules jdk.incubator.vector
+			}
+		}
+		return new ScalarRankKernels();
+	}
+
+	/**
+	 * @return name of the kernels in use, like "scalar"
+	 */
+	public static String implementation() {
+		return KERNELS.name();
+	}
+
+	/**
+	 * @param outOffsets
+	 *            out adjacency offsets of the graph
+	 * @param beta
+	 * @return BETA / out degree of every vertex, 0 for vertices without out
+	 *         edges
+	 */
+	public static double[] scaledInverseDegrees(int[] outOffsets, double beta) {
+		double[] result = new double[outOffsets.length - 1];
+		for (int i = 0; i < result.length; i++) {
+			int outDegree = outOffsets[i + 1] - outOffsets[i];
+			result[i] = outDegree == 0 ? 0 : beta / outDegree;
+		}
+		return result;
+	}
+
+	/**
+	 * @param outOffsets
+	 *            out adjacency offsets of the graph
+	 * @return indexes of the vertices without out edges
+	 */
+	public static int[] danglingVertices(int[] outOffsets) {
+		int count = 0;
+		for (int i = 0; i + 1 < outOffsets.length; i++) {
+			if (outOffsets[i] == outOffsets[i + 1]) {
+				count++;
+			}
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int i = 0; i + 1 < outOffsets.length; i++) {
+			if (outOffsets[i] == outOffsets[i + 1]) {
+				result[count++] = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the rank every vertex passes along each of its out edges, and
+	 * the sum of the ranks in the same pass.
+	 *
+	 * @param pN
+	 * @param scaledInverseDegrees
+	 *            BETA / out degree of every vertex
+	 * @param contributions
+	 *            filled with pN[i] * scaledInverseDegrees[i]
+	 * @return sum of pN
+	 */
+	public static double scaleContributions(double[] pN, double[] scaledInverseDegrees, double[] contributions) {
+		return KERNELS.scaleContributions(pN, scaledInverseDegrees, contributions);
+	}
+
+	/**
+	 * @param pN
+	 * @param indexes
+	 * @return sum of pN at the given indexes
+	 */
+	public static double sumAt(double[] pN, int[] indexes) {
+		double sum = 0;
+		for (int index : indexes) {
+			sum += pN[index];
+		}
+		return sum;
+	}
+
+	/**
+	 * Compute the next rank of every vertex from the contributions of its in
+	 * neighbours, and the L1 norm of the change in the same pass.
+	 *
+	 * @param inOffsets
+	 * @param inSources
+	 *            in adjacency arrays of the graph
+	 * @param contributions
+	 *            rank passed along each out edge of every vertex
+	 * @param defaultValue
+	 *            teleport and dangling rank every vertex gets
+	 * @param pN
+	 * @param pNPlusOne
+	 *            filled with the next rank vector
+	 * @return sum of |pNPlusOne[i] - pN[i]|
+	 */
+	public static double gatherRanks(int[] inOffsets, int[] inSources, double[] contributions, double defaultValue,
+			double[] pN, double[] pNPlusOne) {
+		return KERNELS.gatherRanks(inOffsets, inSources, contributions, defaultValue, pN, pNPlusOne);
+	}
+}
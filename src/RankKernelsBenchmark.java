@@ -0,0 +1,224 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.module.ModuleFinder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Time a step of the random walk on a random graph with the three versions of
+ * its loops: the separate loops PageRank used before (fill the teleport term,
+ * find the dangling rank, scale by out degree, gather, L1 norm, sum check),
+ * the fused scalar {@link RankKernels} and the fused Vector API kernels.
+ *
+ * Like JMH, every version runs in forked JVMs so that the profile of one does
+ * not steer the compilation of the other, with warmup iterations that are not
+ * timed before the measured iterations, and the results of every step are
+ * consumed so that the JIT compiler cannot drop the loops. The vector version
+ * is forked with --add-modules jdk.incubator.vector, and is skipped if this
+ * JVM has no such module or VectorRankKernels was not compiled.
+ *
+ * Usage: java RankKernelsBenchmark [numOfVertices] [averageDegree] [forks]
+ * [warmups] [iterations]
+ */
+public class RankKernelsBenchmark {
+
+	private static final double BETA = 0.85;
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+	/* Steps of the random walk timed as one iteration */
+	private static final int STEPS_PER_ITERATION = 10;
+
+	/* Consumes the results of the steps */
+	private static volatile double blackhole;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals("-fork")) {
+			runFork(args[1], Arrays.copyOfRange(args, 2, args.length));
+			return;
+		}
+		String[] parameters = { args.length > 0 ? args[0] : "2000000", args.length > 1 ? args[1] : "8",
+				args.length > 3 ? args[3] : "5", args.length > 4 ? args[4] : "10" };
+		int forks = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		System.out.println("Steps of the random walk on " + parameters[0] + " vertices of average degree "
+				+ parameters[1] + ", " + forks + " forks of " + parameters[2] + " warmup and " + parameters[3]
+				+ " measured iterations of " + STEPS_PER_ITERATION + " steps:");
+		// the module is in the runtime image even if this JVM was started without it
+		boolean hasVector = ModuleFinder.ofSystem().find(VECTOR_MODULE).isPresent();
+		double separate = 0;
+		for (String variant : new String[] { "separate", "scalar", "vector" }) {
+			if (variant.equals("vector") && !hasVector) {
+				System.out.println("vector:   skipped, the JVM has no " + VECTOR_MODULE + " module");
+				continue;
+			}
+			ArrayList<Double> times = new ArrayList<Double>();
+			String implementation = null;
+			for (int fork = 0; fork < forks; fork++) {
+				implementation = fork(variant, parameters, times);
+				if (implementation == null) {
+					break;
+				}
+			}
+			if (implementation == null) {
+				System.out.println(variant + ":   skipped, VectorRankKernels could not be loaded");
+				continue;
+			}
+			double mean = times.stream().mapToDouble(t -> t).average().orElse(0);
+			double variance = times.stream().mapToDouble(t -> (t - mean) * (t - mean)).sum()
+					/ Math.max(1, times.size() - 1);
+			if (variant.equals("separate")) {
+				separate = mean;
+			}
+			System.out.printf("%-9s %8.2f +- %.2f ms per step (%.2fx) [%s]%n", variant + ":", mean,
+					Math.sqrt(variance), separate / mean, implementation);
+		}
+	}
+
+	/**
+	 * Run the given version in a new JVM and add the time per step of its
+	 * measured iterations to times.
+	 *
+	 * @return name of the kernels the fork used, or null if it could not use
+	 *         the requested ones
+	 */
+	private static String fork(String variant, String[] parameters, List<Double> times)
+			throws IOException, InterruptedException {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		if (variant.equals("vector")) {
+			command.add("--add-modules");
+			command.add(VECTOR_MODULE);
+		} else {
+			command.add("-DrankKernels=scalar");
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(RankKernelsBenchmark.class.getName());
+		command.add("-fork");
+		command.add(variant);
+		command.addAll(Arrays.asList(parameters));
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		String implementation = null;
+		try (BufferedReader br = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith("kernels ")) {
+					implementation = line.substring(8);
+				} else if (line.startsWith("time ")) {
+					times.add(Double.parseDouble(line.substring(5)));
+				}
+			}
+		}
+		if (process.waitFor() != 0) {
+			throw new IOException("The " + variant + " fork failed.");
+		}
+		if (variant.equals("vector") && (implementation == null || !implementation.startsWith("vector"))) {
+			return null;
+		}
+		return variant.equals("separate") ? "separate loops" : implementation;
+	}
+
+	/**
+	 * Body of a forked JVM: build the graph, run the warmup and the measured
+	 * iterations, and print the kernels in use and the time per step of every
+	 * measured iteration.
+	 */
+	private static void runFork(String variant, String[] parameters) {
+		int numOfVertices = Integer.parseInt(parameters[0]);
+		int averageDegree = Integer.parseInt(parameters[1]);
+		int warmups = Integer.parseInt(parameters[2]);
+		int iterations = Integer.parseInt(parameters[3]);
+
+		// out degrees uniform in [1, 2 * averageDegree - 1], a tenth dangling
+		Random random = new Random(42);
+		int[] outOffsets = new int[numOfVertices + 1];
+		for (int i = 0; i < numOfVertices; i++) {
+			int outDegree = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(2 * averageDegree - 1);
+			outOffsets[i + 1] = outOffsets[i] + outDegree;
+		}
+		int[] outTargets = new int[outOffsets[numOfVertices]];
+		int[] inOffsets = new int[numOfVertices + 1];
+		for (int e = 0; e < outTargets.length; e++) {
+			outTargets[e] = random.nextInt(numOfVertices);
+			inOffsets[outTargets[e] + 1]++;
+		}
+		for (int i = 0; i < numOfVertices; i++) {
+			inOffsets[i + 1] += inOffsets[i];
+		}
+		int[] inSources = new int[outTargets.length];
+		int[] next = Arrays.copyOf(inOffsets, numOfVertices);
+		for (int i = 0; i < numOfVertices; i++) {
+			for (int e = outOffsets[i]; e < outOffsets[i + 1]; e++) {
+				inSources[next[outTargets[e]]++] = i;
+			}
+		}
+		double[] pN = new double[numOfVertices];
+		Arrays.fill(pN, 1.0 / numOfVertices);
+		double[] pNPlusOne = new double[numOfVertices];
+		double[] contributions = new double[numOfVertices];
+		double[] scaledInverseDegrees = RankKernels.scaledInverseDegrees(outOffsets, BETA);
+		int[] danglingVertices = RankKernels.danglingVertices(outOffsets);
+
+		System.out.println("kernels " + RankKernels.implementation());
+		for (int iteration = -warmups; iteration < iterations; iteration++) {
+			long startTime = System.nanoTime();
+			for (int step = 0; step < STEPS_PER_ITERATION; step++) {
+				if (variant.equals("separate")) {
+					blackhole += separatePasses(pN, pNPlusOne, contributions, outOffsets, inOffsets, inSources);
+				} else {
+					double sum = RankKernels.scaleContributions(pN, scaledInverseDegrees, contributions);
+					double danglingSum = RankKernels.sumAt(pN, danglingVertices);
+					double defaultValue = (1.0 - BETA) / numOfVertices + BETA * danglingSum / numOfVertices;
+					blackhole += sum
+							+ RankKernels.gatherRanks(inOffsets, inSources, contributions, defaultValue, pN, pNPlusOne);
+				}
+			}
+			double time = (System.nanoTime() - startTime) / 1e6 / STEPS_PER_ITERATION;
+			if (iteration >= 0) {
+				System.out.println("time " + time);
+			}
+		}
+	}
+
+	/**
+	 * A step as separate loops.
+	 *
+	 * @return sum check plus norm
+	 */
+	private static double separatePasses(double[] pN, double[] pNPlusOne, double[] contributions, int[] outOffsets,
+			int[] inOffsets, int[] inSources) {
+		int n = pN.length;
+		double danglingSum = 0;
+		for (int i = 0; i < n; i++) {
+			if (outOffsets[i + 1] == outOffsets[i]) {
+				danglingSum += pN[i];
+			}
+		}
+		double defaultValue = (1.0 - BETA) / n + BETA * danglingSum / n;
+		Arrays.fill(pNPlusOne, defaultValue);
+		for (int i = 0; i < n; i++) {
+			int outDegree = outOffsets[i + 1] - outOffsets[i];
+			if (outDegree != 0) {
+				contributions[i] = BETA * pN[i] / outDegree;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int e = inOffsets[i]; e < inOffsets[i + 1]; e++) {
+				pNPlusOne[i] += contributions[inSources[e]];
+			}
+		}
+		double norm = 0;
+		for (int i = 0; i < n; i++) {
+			norm += Math.abs(pNPlusOne[i] - pN[i]);
+		}
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += pN[i];
+		}
+		return sum + norm;
+	}
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Load a {@link RankQueryServer} with concurrent clients: every client thread
+ * sends rank, degree and neighbour queries for random pages of the snapshot,
+ * one after the other over a kept alive connection. After WARMUP_SECONDS of
+ * untimed queries, it reports the queries per second of all clients together
+ * and the median and 99th percentile latency.
+ *
+ * Usage: java RankQueryLoad port snapshotFile [clients] [seconds]
+ */
+public class RankQueryLoad {
+
+	private static final int WARMUP_SECONDS = 2;
+	/* Pages of the snapshot the queries are about */
+	private static final int MAX_PAGES = 10000;
+	private static final String[] QUERIES = { "rank", "degree", "neighbours" };
+
+	private static volatile boolean measuring = false;
+	private static volatile boolean stopped = false;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("Usage: java RankQueryLoad port snapshotFile [clients] [seconds]");
+			return;
+		}
+		int port = Integer.parseInt(args[0]);
+		int numOfClients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		RankSnapshot snapshot = RankSnapshot.read(args[1]);
+		String[] pages = snapshot.topKPageRank(Math.min(MAX_PAGES, snapshot.numVertices()));
+
+		Client[] clients = new Client[numOfClients];
+		Thread[] threads = new Thread[numOfClients];
+		for (int i = 0; i < numOfClients; i++) {
+			clients[i] = new Client(port, pages, i);
+			threads[i] = new Thread(clients[i]);
+			threads[i].start();
+		}
+		Thread.sleep(WARMUP_SECONDS * 1000L);
+		measuring = true;
+		long startTime = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		stopped = true;
+		long usedTime = System.nanoTime() - startTime;
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long numOfQueries = 0;
+		int numOfErrors = 0;
+		for (Client client : clients) {
+			numOfQueries += client.numOfLatencies;
+			numOfErrors += client.numOfErrors;
+		}
+		long[] latencies = new long[(int) numOfQueries];
+		int size = 0;
+		for (Client client : clients) {
+			System.arraycopy(client.latencies, 0, latencies, size, client.numOfLatencies);
+			size += client.numOfLatencies;
+		}
+		Arrays.sort(latencies);
+		System.out.printf("%d clients: %.0f queries/s, latency median %.3f ms, 99th percentile %.3f ms, %d errors.%n",
+				numOfClients, numOfQueries / (usedTime / 1e9), percentile(latencies, 0.5) / 1e6,
+				percentile(latencies, 0.99) / 1e6, numOfErrors);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+	}
+
+	/**
+	 * A client sending one query at a time until the load is stopped.
+	 */
+	private static class Client implements Runnable {
+		private int port;
+		private String[] pages;
+		private Random random;
+		private long[] latencies = new long[1024];
+		private int numOfLatencies = 0;
+		private int numOfErrors = 0;
+
+		private Client(int port, String[] pages, int seed) {
+			this.port = port;
+			this.pages = pages;
+			this.random = new Random(seed);
+		}
+
+		@Override
+		public void run() {
+			byte[] buffer = new byte[8192];
+			while (!stopped) {
+				String query = QUERIES[random.nextInt(QUERIES.length)];
+				String page = pages[random.nextInt(pages.length)];
+				long startTime = System.nanoTime();
+				boolean failed = false;
+				try {
+					URL url = new URL("http://localhost:" + port + "/" + query + "?page="
+							+ URLEncoder.encode(page, StandardCharsets.UTF_8.name()));
+					HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+					// the body is read to the end so that the connection is kept alive
+					try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream()
+							: connection.getErrorStream()) {
+						while (in != null && in.read(buffer) >= 0) {
+						}
+					}
+					failed = connection.getResponseCode() != 200;
+				} catch (IOException e) {
+					failed = true;
+				}
+				if (measuring && !stopped) {
+					if (failed) {
+						numOfErrors++;
+					}
+					if (numOfLatencies == latencies.length) {
+						latencies = Arrays.copyOf(latencies, latencies.length * 2);
+					}
+					latencies[numOfLatencies++] = System.nanoTime() - startTime;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A long running HTTP server that answers rank queries from a
+ * {@link RankSnapshot} loaded once, instead of parsing and ranking the graph
+ * again for every question. The snapshot file is checked every few seconds;
+ * when a new crawl writes a new snapshot it is loaded in the background and
+ * swapped in atomically. A snapshot counts as new when the file key (the
+ * inode), the size or the modification time of the file changed, since a
+ * snapshot renamed into place within the resolution of the modification
+ * time, or copied with its time kept, would not change the time alone. Every query reads the current snapshot once, so
+ * queries in flight finish on the snapshot they started with.
+ *
+ * Queries (plain text answers, one page per line):
+ *
+ * <pre>
+ * /rank?page=/wiki/Tennis
+ * /degree?page=/wiki/Tennis              in and out degree
+ * /neighbours?page=/wiki/Tennis&dir=in   dir is out (default) or in
+ * /top?by=rank&k=15                      by is rank, in or out
+ * </pre>
+ *
+ * Usage: java RankQueryServer port snapshotFile
+ */
+public class RankQueryServer {
+
+	/* Seconds between checks of the snapshot file */
+	private static final int RELOAD_INTERVAL = 5;
+
+	private String snapshotFileName;
+	private AtomicReference<RankSnapshot> current;
+	/* File key, size and modification time of the loaded snapshot file */
+	private FileVersion loadedVersion;
+	private HttpServer server;
+	private ExecutorService workers;
+	private ScheduledExecutorService reloader;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java RankQueryServer port snapshotFile");
+			return;
+		}
+		RankQueryServer server = new RankQueryServer(Integer.parseInt(args[0]), args[1]);
+		server.start();
+	}
+
+	/**
+	 * Load the snapshot and bind the server.
+	 *
+	 * @param port
+	 * @param snapshotFileName
+	 * @throws IOException
+	 */
+	public RankQueryServer(int port, String snapshotFileName) throws IOException {
+		this.snapshotFileName = snapshotFileName;
+		this.loadedVersion = FileVersion.of(snapshotFileName);
+		this.current = new AtomicReference<RankSnapshot>(RankSnapshot.read(snapshotFileName));
+		// answers are small; without this every answer waits for the delayed ACK of the client
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+		server.createContext("/rank", exchange -> handle(exchange, "rank"));
+		server.createContext("/degree", exchange -> handle(exchange, "degree"));
+		server.createContext("/neighbours", exchange -> handle(exchange, "neighbours"));
+		server.createContext("/top", exchange -> handle(exchange, "top"));
+		this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		server.setExecutor(workers);
+	}
+
+	public void start() {
+		server.start();
+		reloader = Executors.newSingleThreadScheduledExecutor();
+		reloader.scheduleWithFixedDelay(() -> reloadIfChanged(), RELOAD_INTERVAL, RELOAD_INTERVAL,
+				TimeUnit.SECONDS);
+		System.out.println("RankQueryServer is serving " + snapshotFileName + " on port "
+				+ server.getAddress().getPort() + "......");
+	}
+
+	public void stop() {
+		reloader.shutdownNow();
+		server.stop(0);
+		workers.shutdown();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Replace the served snapshot. Queries in flight keep the old one.
+	 *
+	 * @param snapshot
+	 */
+	public void swap(RankSnapshot snapshot) {
+		current.set(snapshot);
+	}
+
+	/**
+	 * What identifies a version of a file without reading it.
+	 */
+	private static class FileVersion {
+		private Object fileKey;
+		private long size;
+		private long modified;
+
+		/**
+		 * @return the version of the given file
+		 * @throws IOException
+		 *             if the file cannot be read
+		 */
+		private static FileVersion of(String fileName) throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(Paths.get(fileName), BasicFileAttributes.class);
+			FileVersion version = new FileVersion();
+			version.fileKey = attributes.fileKey();
+			version.size = attributes.size();
+			version.modified = attributes.lastModifiedTime().toMillis();
+			return version;
+		}
+
+		private boolean sameAs(FileVersion other) {
+			return Objects.equals(fileKey, other.fileKey) && size == other.size && modified == other.modified;
+		}
+	}
+
+	/**
+	 * Load the snapshot file again if it changed since it was last loaded.
+	 * The version is read before the file, so a file replaced while it is
+	 * read is loaded again at the next check.
+	 */
+	private void reloadIfChanged() {
+		FileVersion version;
+		try {
+			version = FileVersion.of(snapshotFileName);
+		} catch (IOException e) {
+			// between the delete and the rename of a new snapshot
+			return;
+		}
+		if (version.sameAs(loadedVersion)) {
+			return;
+		}
+		try {
+			RankSnapshot snapshot = RankSnapshot.read(snapshotFileName);
+			loadedVersion = version;
+			swap(snapshot);
+			System.out.println("Loaded new snapshot with " + snapshot.numVertices() + " pages.");
+		} catch (IOException e) {
+			System.err.println("Failed to load snapshot " + snapshotFileName + ": " + e.getMessage());
+		}
+	}
+
+	private void handle(HttpExchange exchange, String query) throws IOException {
+		RankSnapshot snapshot = current.get();
+		StringBuilder sb = new StringBuilder();
+		int status = 200;
+		try {
+			HashMap<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+			if (query.equals("top")) {
+				int k = Integer.parseInt(parameters.getOrDefault("k", "10"));
+				if (k < 0) {
+					throw new IllegalArgumentException("k should not be negative: " + k);
+				}
+				String by = parameters.getOrDefault("by", "rank");
+				String[] pages;
+				if (by.equals("rank")) {
+					pages = snapshot.topKPageRank(k);
+				} else if (by.equals("in")) {
+					pages = snapshot.topKInDegree(k);
+				} else if (by.equals("out")) {
+					pages = snapshot.topKOutDegree(k);
+				} else {
+					throw new IllegalArgumentException("Unknown order: " + by);
+				}
+				appendLines(sb, pages);
+			} else {
+				String page = parameters.get("page");
+				int index = page == null ? -1 : snapshot.indexOf(page);
+				if (index < 0) {
+					status = 404;
+					sb.append("Unknown page: ").append(page).append('\n');
+				} else if (query.equals("rank")) {
+					sb.append(snapshot.rankOf(index)).append('\n');
+				} else if (query.equals("degree")) {
+					sb.append(snapshot.inDegreeOf(index)).append(' ').append(snapshot.outDegreeOf(index))
+							.append('\n');
+				} else if ("in".equals(parameters.get("dir"))) {
+					appendLines(sb, snapshot.inNeighboursOf(index));
+				} else {
+					appendLines(sb, snapshot.outNeighboursOf(index));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			sb.setLength(0);
+			sb.append(e.getMessage()).append('\n');
+		}
+		byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private static void appendLines(StringBuilder sb, String[] pages) {
+		for (String page : pages) {
+			sb.append(page).append('\n');
+		}
+	}
+
+	/**
+	 * @param rawQuery
+	 * @return the decoded parameters of the query string
+	 */
+	private static HashMap<String, String> parameters(String rawQuery) {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				try {
+					parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+							URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					// UTF-8 is always supported
+				}
+			}
+		}
+		return parameters;
+	}
+}
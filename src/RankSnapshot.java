@@ -0,0 +1,252 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * An immutable ranked graph, written by {@link PageRank#writeSnapshot(String)}
+ * and served by {@link RankQueryServer}. Besides the ranks and adjacency
+ * arrays it keeps the vertices sorted by rank, in degree and out degree, so
+ * that any top k result is a prefix of a precomputed order, and a
+ * {@link PerfectHashIndex} from titles to indexes.
+ */
+public class RankSnapshot {
+
+	private static final int MAGIC = 0x52414E4B;
+
+	private String[] vertices;
+	private double[] ranks;
+	private int[] outOffsets;
+	private int[] outTargets;
+	private int[] inOffsets;
+	private int[] inSources;
+	/* vertex indexes by descending rank, in degree and out degree */
+	private int[] byRank;
+	private int[] byInDegree;
+	private int[] byOutDegree;
+	private PerfectHashIndex index;
+
+	/**
+	 * Build a snapshot, computing the orders.
+	 *
+	 * @param vertices
+	 *            the vertices/pages by index
+	 * @param ranks
+	 *            the rank vector
+	 * @param outOffsets
+	 * @param outTargets
+	 *            out adjacency arrays
+	 * @param inOffsets
+	 * @param inSources
+	 *            in adjacency arrays
+	 */
+	public RankSnapshot(String[] vertices, double[] ranks, int[] outOffsets, int[] outTargets, int[] inOffsets,
+			int[] inSources) {
+		this.vertices = vertices;
+		this.ranks = ranks;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inSources = inSources;
+		double[] inDegrees = new double[vertices.length];
+		double[] outDegrees = new double[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			inDegrees[i] = inOffsets[i + 1] - inOffsets[i];
+			outDegrees[i] = outOffsets[i + 1] - outOffsets[i];
+		}
+		this.byRank = descendingOrder(ranks);
+		this.byInDegree = descendingOrder(inDegrees);
+		this.byOutDegree = descendingOrder(outDegrees);
+		this.index = new PerfectHashIndex(vertices);
+	}
+
+	private RankSnapshot() {
+	}
+
+	/**
+	 * @param data
+	 * @return indexes of data sorted by descending value
+	 */
+	private static int[] descendingOrder(final double[] data) {
+		Integer[] order = new Integer[data.length];
+		for (int i = 0; i < data.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(data[b], data[a]));
+		int[] result = new int[data.length];
+		for (int i = 0; i < data.length; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param url
+	 * @return index of the given page, or -1 if it is not in the graph
+	 */
+	public int indexOf(String url) {
+		return index.indexOf(url);
+	}
+
+	public int numVertices() {
+		return vertices.length;
+	}
+
+	public int numEdges() {
+		return outTargets.length;
+	}
+
+	public double rankOf(int index) {
+		return ranks[index];
+	}
+
+	public int inDegreeOf(int index) {
+		return inOffsets[index + 1] - inOffsets[index];
+	}
+
+	public int outDegreeOf(int index) {
+		return outOffsets[index + 1] - outOffsets[index];
+	}
+
+	/**
+	 * @param index
+	 * @return the pages the given page links to
+	 */
+	public String[] outNeighboursOf(int index) {
+		return pagesOf(outTargets, outOffsets[index], outOffsets[index + 1]);
+	}
+
+	/**
+	 * @param index
+	 * @return the pages linking to the given page
+	 */
+	public String[] inNeighboursOf(int index) {
+		return pagesOf(inSources, inOffsets[index], inOffsets[index + 1]);
+	}
+
+	public String[] topKPageRank(int k) {
+		return topKOf(byRank, k);
+	}
+
+	public String[] topKInDegree(int k) {
+		return topKOf(byInDegree, k);
+	}
+
+	public String[] topKOutDegree(int k) {
+		return topKOf(byOutDegree, k);
+	}
+
+	private String[] topKOf(int[] order, int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("k should not be negative.");
+		}
+		return pagesOf(order, 0, Math.min(k, order.length));
+	}
+
+	private String[] pagesOf(int[] indexes, int start, int end) {
+		String[] result = new String[end - start];
+		for (int i = start; i < end; i++) {
+			result[i - start] = vertices[indexes[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Write the snapshot to a temporary file and move it over the given file,
+	 * so readers never see a partly written snapshot.
+	 *
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void write(String fileName) throws IOException {
+		File file = new File(fileName);
+		File tmpFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile),
+				EdgeBlocks.BUFFER_SIZE));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(vertices.length);
+			for (String vertex : vertices) {
+				out.writeUTF(vertex);
+			}
+			for (double rank : ranks) {
+				out.writeDouble(rank);
+			}
+			writeInts(out, outOffsets);
+			writeInts(out, outTargets);
+			writeInts(out, inOffsets);
+			writeInts(out, inSources);
+			writeInts(out, byRank);
+			writeInts(out, byInDegree);
+			writeInts(out, byOutDegree);
+		} finally {
+			out.close();
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read a snapshot written by {@link #write(String)}.
+	 *
+	 * @param fileName
+	 * @return the snapshot
+	 * @throws IOException
+	 */
+	public static RankSnapshot read(String fileName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName),
+				EdgeBlocks.BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(fileName + " is not a rank snapshot.");
+			}
+			RankSnapshot snapshot = new RankSnapshot();
+			int numOfVertices = in.readInt();
+			snapshot.vertices = new String[numOfVertices];
+			for (int i = 0; i < numOfVertices; i++) {
+				snapshot.vertices[i] = in.readUTF();
+			}
+			snapshot.ranks = new double[numOfVertices];
+			for (int i = 0; i < numOfVertices; i++) {
+				snapshot.ranks[i] = in.readDouble();
+			}
+			snapshot.outOffsets = readInts(in);
+			snapshot.outTargets = readInts(in);
+			snapshot.inOffsets = readInts(in);
+			snapshot.inSources = readInts(in);
+			snapshot.byRank = readInts(in);
+			snapshot.byInDegree = readInts(in);
+			snapshot.byOutDegree = readInts(in);
+			try {
+				snapshot.index = new PerfectHashIndex(snapshot.vertices);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(fileName + " is not a valid rank snapshot: " + e.getMessage());
+			}
+			return snapshot;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] values = new int[in.readInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,77 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetch pages from the live site and append every response, failed ones
+ * included, to a {@link CrawlArchive}, so the crawl can be replayed later by
+ * {@link ReplayPageFetcher}.
+ */
+public class RecordingPageFetcher implements PageFetcher {
+
+	private CrawlArchive archive;
+
+	/**
+	 * @param archive
+	 *            archive opened for writing
+	 */
+	public RecordingPageFetcher(CrawlArchive archive) {
+		this.archive = archive;
+	}
+
+	@Override
+	public InputStream open(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+		int status = 200;
+		if (connection instanceof HttpURLConnection) {
+			status = ((HttpURLConnection) connection).getResponseCode();
+		}
+		List<String> headers = new ArrayList<String>();
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			// the status line has no name
+			if (header.getKey() != null) {
+				for (String value : header.getValue()) {
+					headers.add(header.getKey() + ": " + value);
+				}
+			}
+		}
+		InputStream is = status >= 400 ? ((HttpURLConnection) connection).getErrorStream()
+				: connection.getInputStream();
+		byte[] body = is == null ? new byte[0] : readFully(is);
+		archive.append(new CrawlArchive.Record(url.toString(), status, headers, body));
+		if (status == 404 || status == 410) {
+			throw new FileNotFoundException(url.toString());
+		} else if (status >= 400) {
+			throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
+		}
+		return new ByteArrayInputStream(body);
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+		byte[] buffer = new byte[1 << 16];
+		try {
+			int length = is.read(buffer);
+			while (length > 0) {
+				out.write(buffer, 0, length);
+				length = is.read(buffer);
+			}
+		} finally {
+			is.close();
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public boolean isLive() {
+		return true;
+	}
+}
@@ -0,0 +1,63 @@
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Serve pages from a {@link CrawlArchive} recorded by
+ * {@link RecordingPageFetcher}, so crawls can be repeated offline with exactly
+ * the same pages. A page that was not recorded is reported as missing, like a
+ * page the site does not have. An optional delay per request simulates the
+ * latency of the site.
+ */
+public class ReplayPageFetcher implements PageFetcher {
+
+	private CrawlArchive archive;
+	private long latency;
+
+	/**
+	 * @param archive
+	 *            recorded archive
+	 */
+	public ReplayPageFetcher(CrawlArchive archive) {
+		this(archive, 0);
+	}
+
+	/**
+	 * @param archive
+	 *            recorded archive
+	 * @param latency
+	 *            milliseconds every request is delayed
+	 */
+	public ReplayPageFetcher(CrawlArchive archive, long latency) {
+		if (latency < 0) {
+			throw new IllegalArgumentException("Latency can not be negative.");
+		}
+		this.archive = archive;
+		this.latency = latency;
+	}
+
+	@Override
+	public InputStream open(URL url) throws IOException {
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		CrawlArchive.Record record = archive.read(url.toString());
+		if (record == null || record.status() == 404 || record.status() == 410) {
+			throw new FileNotFoundException(url.toString());
+		} else if (record.status() >= 400) {
+			throw new IOException("Server returned HTTP response code: " + record.status() + " for URL: " + url);
+		}
+		return new ByteArrayInputStream(record.body());
+	}
+
+	@Override
+	public boolean isLive() {
+		return false;
+	}
+}
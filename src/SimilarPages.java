@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Find the pages of a graph whose out links are nearly the same, with the
+ * MinHash banding of {@link LinkSimilarity}. Pages with the same out links
+ * are listed as groups, and a similar pair stands for the pairs of all the
+ * copies of its two pages. On graphs of at most BRUTE_FORCE_LIMIT pages every
+ * pair is also compared exactly, to show how many similar pairs the banding
+ * found and how much faster it is.
+ *
+ * Usage: java SimilarPages graphFile [threshold] [numOfBands] [rowsPerBand]
+ * [maxBucketSize]
+ */
+public class SimilarPages {
+
+	private static final int BRUTE_FORCE_LIMIT = 20000;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println(
+					"Usage: java SimilarPages graphFile [threshold] [numOfBands] [rowsPerBand] [maxBucketSize]");
+			return;
+		}
+		double threshold = args.length > 1 ? Double.parseDouble(args[1]) : 0.8;
+		int numOfBands = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int rowsPerBand = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int maxBucketSize = args.length > 4 ? Integer.parseInt(args[4]) : LinkSimilarity.DEFAULT_MAX_BUCKET_SIZE;
+		GraphLoader loader = new GraphLoader(args[0], Runtime.getRuntime().availableProcessors());
+		loader.load();
+		String[] vertices = loader.vertices();
+		int[] outOffsets = loader.outOffsets();
+		int[] outTargets = loader.outTargets();
+
+		long startTime = System.currentTimeMillis();
+		LinkSimilarity similarity = new LinkSimilarity(outOffsets, outTargets, numOfBands, rowsPerBand);
+		ArrayList<LinkSimilarity.SimilarPair> pairs = similarity.similarPairs(threshold, maxBucketSize);
+		ArrayList<int[]> groups = similarity.identicalGroups();
+		long usedTime = System.currentTimeMillis() - startTime;
+		// pairs of pages the similar pairs and the groups stand for
+		long numOfCoveredPairs = 0;
+		for (LinkSimilarity.SimilarPair pair : pairs) {
+			numOfCoveredPairs += (long) similarity.numOfCopiesOf(pair.first())
+					* similarity.numOfCopiesOf(pair.second());
+		}
+		int numOfCopies = 0;
+		for (int[] group : groups) {
+			numOfCopies += group.length;
+			numOfCoveredPairs += (long) group.length * (group.length - 1) / 2;
+		}
+		System.out.println(pairs.size() + " pairs of " + vertices.length + " pages have out links with Jaccard >= "
+				+ threshold + " (" + numOfBands + " bands of " + rowsPerBand + " rows, " + usedTime + " ms).");
+		System.out.println(groups.size() + " groups of " + numOfCopies + " pages have the same out links, "
+				+ numOfCoveredPairs + " similar pairs of pages in all.");
+		if (similarity.numOfSkippedPairs() > 0) {
+			System.err.println("Warning: " + similarity.numOfSkippedPairs()
+					+ " candidate pairs of buckets larger than " + maxBucketSize
+					+ " were not compared; similar pairs may be missing.");
+		}
+		for (int i = 0; i < Math.min(15, pairs.size()); i++) {
+			LinkSimilarity.SimilarPair pair = pairs.get(i);
+			System.out.println(vertices[pair.first()] + " " + vertices[pair.second()] + " " + pair.similarity());
+		}
+		for (int i = 0; i < Math.min(5, groups.size()); i++) {
+			int[] group = groups.get(i);
+			System.out.println(group.length + " pages with the out links of " + vertices[group[0]]);
+		}
+
+		if (vertices.length <= BRUTE_FORCE_LIMIT) {
+			startTime = System.currentTimeMillis();
+			int numOfPairs = 0;
+			for (int u = 0; u < vertices.length; u++) {
+				if (outOffsets[u] == outOffsets[u + 1]) {
+					continue;
+				}
+				for (int v = u + 1; v < vertices.length; v++) {
+					if (similarity.jaccard(u, v) >= threshold) {
+						numOfPairs++;
+					}
+				}
+			}
+			usedTime = System.currentTimeMillis() - startTime;
+			System.out.println("Comparing every pair found " + numOfPairs + " pairs in " + usedTime + " ms.");
+		}
+	}
+}
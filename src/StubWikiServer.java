@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A generated wiki that stands in for Wikipedia when testing crawlers on one
+ * host, for example "java DistributedCrawler 4 500 Graph.txt
+ * http://localhost:8080". It serves robots.txt, html pages and raw text pages
+ * at the same addresses as the wiki, with an optional delay per request.
+ *
+ * Page 0 is /wiki/Tennis and page i is /wiki/Page_i. Every page links to the
+ * next page and to a few pseudo random pages, plus a file and a section link
+ * the crawlers must skip. Every page mentions tennis; three of four mention a
+ * grand slam. Every tenth page is a redirect to the next page, and
+ * /wiki/Page_5 is disallowed by robots.txt.
+ *
+ * Usage: java StubWikiServer port numOfPages [latency]
+ */
+public class StubWikiServer {
+
+	/* Pseudo random links of every page */
+	private static final int LINKS_PER_PAGE = 8;
+
+	private int numOfPages;
+	private long latency;
+	private HttpServer server;
+	private ExecutorService workers;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: java StubWikiServer port numOfPages [latency]");
+			return;
+		}
+		StubWikiServer server = new StubWikiServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+				args.length > 2 ? Long.parseLong(args[2]) : 0);
+		server.start();
+	}
+
+	/**
+	 * @param port
+	 *            0 picks a free one
+	 * @param numOfPages
+	 * @param latency
+	 *            milliseconds every request is delayed
+	 * @throws IOException
+	 */
+	public StubWikiServer(int port, int numOfPages, long latency) throws IOException {
+		if (numOfPages <= 0) {
+			throw new IllegalArgumentException("Number of pages should be greater than 0.");
+		}
+		this.numOfPages = numOfPages;
+		this.latency = latency;
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+		server.createContext("/", exchange -> handle(exchange));
+		this.workers = Executors.newCachedThreadPool();
+		server.setExecutor(workers);
+	}
+
+	public void start() {
+		server.start();
+		System.out.println("StubWikiServer is serving " + numOfPages + " pages at " + baseUrl() + "......");
+	}
+
+	public void stop() {
+		server.stop(0);
+		workers.shutdown();
+	}
+
+	/**
+	 * @return address of the wiki, to use instead of WikiCrawler.BASE_URL
+	 */
+	public String baseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private static String title(int page) {
+		return page == 0 ? "Tennis" : "Page_" + page;
+	}
+
+	/**
+	 * @return the page with the given title, or -1 if there is none
+	 */
+	private int pageOf(String title) {
+		if (title.equals("Tennis")) {
+			return 0;
+		}
+		if (!title.startsWith("Page_")) {
+			return -1;
+		}
+		try {
+			int page = Integer.parseInt(title.substring(5));
+			return page > 0 && page < numOfPages ? page : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String htmlOf(int page) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html>\n<head><title>").append(title(page)).append("</title></head>\n<body>\n");
+		sb.append("<p>").append(title(page)).append(" links to <a href=\"/wiki/")
+				.append(title((page + 1) % numOfPages)).append("\">the next page</a>");
+		long h = page * 0x9E3779B97F4A7C15L + 1;
+		for (int i = 0; i < LINKS_PER_PAGE; i++) {
+			h ^= h << 13;
+			h ^= h >>> 7;
+			h ^= h << 17;
+			int target = (int) ((h >>> 1) % numOfPages);
+			sb.append(", <a href=\"/wiki/").append(title(target)).append("\">").append(target).append("</a>");
+		}
+		sb.append(", <a href=\"/wiki/File:Ball.jpg\">a file</a> and <a href=\"/wiki/Tennis#History\">a section</a>");
+		sb.append(".</p>\n</body>\n</html>\n");
+		return sb.toString();
+	}
+
+	private String textOf(int page) {
+		if (page % 10 == 9) {
+			return "#REDIRECT [[" + title((page + 1) % numOfPages) + "]]\n";
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("'''").append(title(page)).append("''' is a page about tennis.\n");
+		if (page % 4 != 3) {
+			sb.append("It was played at a Grand Slam tournament.\n");
+		}
+		return sb.toString();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		String path = exchange.getRequestURI().getRawPath();
+		String query = exchange.getRequestURI().getRawQuery();
+		String body = null;
+		if (path.equals("/robots.txt")) {
+			body = "User-agent: *\nDisallow: /wiki/Page_5\n";
+		} else if (path.startsWith("/wiki/")) {
+			int page = pageOf(decode(path.substring(6)));
+			body = page < 0 ? null : htmlOf(page);
+		} else if (path.equals("/w/index.php") && query != null && query.startsWith("title=")) {
+			int end = query.indexOf('&');
+			int page = pageOf(decode(query.substring(6, end < 0 ? query.length() : end)));
+			body = page < 0 ? null : textOf(page);
+		}
+		int status = 200;
+		if (body == null) {
+			status = 404;
+			body = "Not found\n";
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return s;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class maps the many spellings of a wiki page (percent-encoded links,
+ * lower case first letters, spaces instead of underscores and redirect
+ * titles) to one canonical title, so that the crawler fetches every page only
+ * once and the graph has exactly one vertex per page.
+ *
+ * Redirects are learned while crawling and cached, and the cache is stored in
+ * a file next to the graph file so that later crawls can reuse it.
+ */
+public class TitleResolver {
+
+	private static final String WIKI_PREFIX = "/wiki/";
+	/* Longest chain of redirects that is followed before giving up */
+	private static final int MAX_REDIRECT_HOPS = 5;
+	private static final Pattern REDIRECT_PATTERN = Pattern.compile("^\\s*#REDIRECT\\s*:?\\s*\\[\\[([^\\]|#]+)",
+			Pattern.CASE_INSENSITIVE);
+
+	/* <alias title, title it redirects to> */
+	private HashMap<String, String> redirects;
+
+	public TitleResolver() {
+		this.redirects = new HashMap<String, String>();
+	}
+
+	/**
+	 * Normalize the given relative address: decode percent escapes, replace
+	 * spaces by underscores and capitalize the first letter of the title, the
+	 * same way the wiki does. Addresses that are not wiki pages are returned
+	 * unchanged.
+	 *
+	 * @param url
+	 *            relative address
+	 * @return normalized relative address
+	 */
+	public static String normalize(String url) {
+		if (!url.startsWith(WIKI_PREFIX)) {
+			return url;
+		}
+		String title = url.substring(WIKI_PREFIX.length());
+		if (title.indexOf('%') >= 0) {
+			try {
+				// a literal '+' is part of the title (e.g. C++), not a space
+				title = URLDecoder.decode(title.replace("+", "%2B"), "UTF-8");
+			} catch (IllegalArgumentException e) {
+				// malformed escape, keep the title as it is
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+			}
+		}
+		StringBuilder sb = new StringBuilder(title.length());
+		for (int i = 0; i < title.length(); i++) {
+			char c = title.charAt(i);
+			if (c == ' ' || c == '_') {
+				if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+					sb.append('_');
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '_') {
+			sb.setLength(sb.length() - 1);
+		}
+		if (sb.length() > 0) {
+			sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+		}
+		return WIKI_PREFIX + sb.toString();
+	}
+
+	/**
+	 * Percent-encode the title of the given relative address so that decoded
+	 * titles can be requested again.
+	 *
+	 * @param url
+	 *            normalized relative address
+	 * @return the title of the address, encoded for use in an URL
+	 */
+	public static String encodedTitle(String url) {
+		String title = url.startsWith(WIKI_PREFIX) ? url.substring(WIKI_PREFIX.length()) : url;
+		try {
+			return URLEncoder.encode(title, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return title;
+		}
+	}
+
+	/**
+	 * Return the canonical address of the given relative address, following
+	 * the cached redirects.
+	 *
+	 * @param url
+	 *            relative address
+	 * @return canonical relative address
+	 */
+	public String canonical(String url) {
+		String title = normalize(url);
+		for (int hops = 0; hops < MAX_REDIRECT_HOPS; hops++) {
+			String target = redirects.get(title);
+			if (target == null || target.equals(title)) {
+				break;
+			}
+			title = target;
+		}
+		return title;
+	}
+
+	/**
+	 * @param url
+	 *            normalized relative address
+	 * @return true if the given page is known to be a redirect
+	 */
+	public boolean isRedirect(String url) {
+		return redirects.containsKey(url);
+	}
+
+	/**
+	 * Check whether the given line of raw wiki text is a redirect. If so, the
+	 * redirect from the given page to its target is cached.
+	 *
+	 * @param url
+	 *            relative address of the page the line was read from
+	 * @param line
+	 *            the first line of the raw wiki text of the page
+	 * @return true if the page is a redirect
+	 */
+	public boolean learnRedirect(String url, String line) {
+		if (line == null) {
+			return false;
+		}
+		Matcher matcher = REDIRECT_PATTERN.matcher(line);
+		if (!matcher.find()) {
+			return false;
+		}
+		String target = normalize(WIKI_PREFIX + matcher.group(1).trim());
+		String alias = normalize(url);
+		if (!alias.equals(target)) {
+			redirects.put(alias, target);
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of cached redirects
+	 */
+	public int numOfRedirects() {
+		return redirects.size();
+	}
+
+	/**
+	 * Read the redirects stored by a previous crawl. Each line of the file has
+	 * one redirect: "alias target". Nothing happens if the file does not
+	 * exist.
+	 *
+	 * @param fileName
+	 */
+	public void loadRedirects(String fileName) {
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8));
+			String line = br.readLine();
+			while (line != null) {
+				String[] titles = line.trim().split(" ");
+				if (titles.length == 2) {
+					redirects.put(titles[0], titles[1]);
+				}
+				line = br.readLine();
+			}
+			br.close();
+		} catch (IOException e) {
+			System.err.println("Failed to read redirects from " + fileName + ". Ignored.");
+		}
+	}
+
+	/**
+	 * Write the cached redirects to the file with given fileName.
+	 *
+	 * @param fileName
+	 */
+	public void outputRedirects(String fileName) {
+		File file = new File(fileName);
+		try {
+			PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8);
+			for (Map.Entry<String, String> entry : redirects.entrySet()) {
+				writer.println(entry.getKey() + " " + entry.getValue());
+			}
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,324 @@
+import java.util.Arrays;
+
+/**
+ * This class computes new vertex indexes that place vertices which are used
+ * together close to each other in memory, so that the rank updates of a step
+ * of the random walk hit the cache more often.
+ *
+ * Every ordering is returned as an array newIndexOf, with newIndexOf[v] the
+ * new index of the vertex with old index v.
+ */
+public class VertexOrdering {
+
+	/**
+	 * Ways to order the vertices.
+	 */
+	public enum Strategy {
+		/* keep the order of the loader */
+		NONE,
+		/* breadth first from the seed page */
+		BFS,
+		/* descending in + out degree */
+		DEGREE,
+		/* greedy Gorder-style: place next the vertex sharing the most
+		 * neighbours with the last few placed vertices */
+		LOCALITY
+	}
+
+	/* Number of last placed vertices a new vertex is compared with */
+	private static final int WINDOW_SIZE = 5;
+
+	private int numOfVertices;
+	private int[] outOffsets;
+	private int[] outTargets;
+	private int[] inOffsets;
+	private int[] inSources;
+
+	/**
+	 * @param outOffsets
+	 * @param outTargets
+	 *            out adjacency arrays of the graph
+	 * @param inOffsets
+	 * @param inSources
+	 *            in adjacency arrays of the graph
+	 */
+	public VertexOrdering(int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inSources) {
+		this.numOfVertices = outOffsets.length - 1;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inSources = inSources;
+	}
+
+	/**
+	 * @param strategy
+	 * @param seed
+	 *            index of the seed page, used by BFS
+	 * @return new index of every vertex
+	 */
+	public int[] newIndexes(Strategy strategy, int seed) {
+		switch (strategy) {
+		case BFS:
+			return toNewIndexes(bfsOrder(seed));
+		case DEGREE:
+			return toNewIndexes(degreeOrder());
+		case LOCALITY:
+			return toNewIndexes(localityOrder());
+		default:
+			int[] identity = new int[numOfVertices];
+			for (int v = 0; v < numOfVertices; v++) {
+				identity[v] = v;
+			}
+			return identity;
+		}
+	}
+
+	/**
+	 * Relabel adjacency arrays: the list of old vertex v becomes the list of
+	 * newIndexOf[v], with every entry relabeled and the list sorted.
+	 *
+	 * @param offsets
+	 * @param targets
+	 * @param newIndexOf
+	 * @return {new offsets, new targets}
+	 */
+	public static int[][] relabel(int[] offsets, int[] targets, int[] newIndexOf) {
+		int n = offsets.length - 1;
+		int[] newOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			newOffsets[newIndexOf[v] + 1] = offsets[v + 1] - offsets[v];
+		}
+		for (int v = 0; v < n; v++) {
+			newOffsets[v + 1] += newOffsets[v];
+		}
+		int[] newTargets = new int[targets.length];
+		for (int v = 0; v < n; v++) {
+			int position = newOffsets[newIndexOf[v]];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				newTargets[position++] = newIndexOf[targets[e]];
+			}
+			Arrays.sort(newTargets, newOffsets[newIndexOf[v]], position);
+		}
+		return new int[][] { newOffsets, newTargets };
+	}
+
+	/**
+	 * @param order
+	 *            old indexes in their new order
+	 * @return new index of every old index
+	 */
+	private int[] toNewIndexes(int[] order) {
+		int[] newIndexOf = new int[numOfVertices];
+		for (int i = 0; i < numOfVertices; i++) {
+			newIndexOf[order[i]] = i;
+		}
+		return newIndexOf;
+	}
+
+	private int degreeOf(int v) {
+		return outOffsets[v + 1] - outOffsets[v] + inOffsets[v + 1] - inOffsets[v];
+	}
+
+	/**
+	 * Breadth first over out and in edges from the seed; vertices that are
+	 * not reached start new searches in index order.
+	 *
+	 * @param seed
+	 * @return old indexes in their new order
+	 */
+	private int[] bfsOrder(int seed) {
+		int[] order = new int[numOfVertices];
+		boolean[] placed = new boolean[numOfVertices];
+		int head = 0;
+		int tail = 0;
+		int next = 0;
+		if (seed >= 0 && seed < numOfVertices) {
+			placed[seed] = true;
+			order[tail++] = seed;
+		}
+		while (tail < numOfVertices) {
+			if (head == tail) {
+				while (placed[next]) {
+					next++;
+				}
+				placed[next] = true;
+				order[tail++] = next;
+			}
+			int v = order[head++];
+			for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+				if (!placed[outTargets[e]]) {
+					placed[outTargets[e]] = true;
+					order[tail++] = outTargets[e];
+				}
+			}
+			for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+				if (!placed[inSources[e]]) {
+					placed[inSources[e]] = true;
+					order[tail++] = inSources[e];
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Counting sort by descending in + out degree, ties kept in index order.
+	 *
+	 * @return old indexes in their new order
+	 */
+	private int[] degreeOrder() {
+		int maxDegree = 0;
+		for (int v = 0; v < numOfVertices; v++) {
+			maxDegree = Math.max(maxDegree, degreeOf(v));
+		}
+		int[] start = new int[maxDegree + 2];
+		for (int v = 0; v < numOfVertices; v++) {
+			start[maxDegree - degreeOf(v) + 1]++;
+		}
+		for (int d = 0; d <= maxDegree; d++) {
+			start[d + 1] += start[d];
+		}
+		int[] order = new int[numOfVertices];
+		for (int v = 0; v < numOfVertices; v++) {
+			order[start[maxDegree - degreeOf(v)]++] = v;
+		}
+		return order;
+	}
+
+	/**
+	 * Greedy ordering in the spirit of Gorder. The score of an unplaced vertex
+	 * counts its edges to the last WINDOW_SIZE placed vertices plus the in
+	 * neighbours it shares with them; the vertex with the highest score is
+	 * placed next. Shared in neighbours with more out edges than about the
+	 * square root of the number of vertices are skipped, they would make every
+	 * score update quadratic in their degree while telling little about
+	 * locality.
+	 *
+	 * @return old indexes in their new order
+	 */
+	private int[] localityOrder() {
+		int hubDegree = Math.max(16, (int) Math.sqrt(numOfVertices));
+		int[] order = degreeOrder();
+		int[] result = new int[numOfVertices];
+		int[] score = new int[numOfVertices];
+		boolean[] placed = new boolean[numOfVertices];
+		LongMaxHeap heap = new LongMaxHeap();
+		int next = 0;
+		for (int i = 0; i < numOfVertices; i++) {
+			int v = -1;
+			while (!heap.isEmpty()) {
+				long top = heap.poll();
+				int candidate = (int) top;
+				if (!placed[candidate] && score[candidate] == (int) (top >>> 32)) {
+					v = candidate;
+					break;
+				}
+			}
+			if (v < 0) {
+				while (placed[order[next]]) {
+					next++;
+				}
+				v = order[next];
+			}
+			placed[v] = true;
+			result[i] = v;
+			updateScores(v, 1, hubDegree, score, placed, heap);
+			if (i >= WINDOW_SIZE) {
+				updateScores(result[i - WINDOW_SIZE], -1, hubDegree, score, placed, heap);
+			}
+			if (heap.size() > 8 * numOfVertices) {
+				// drop the outdated entries
+				heap.clear();
+				for (int u = 0; u < numOfVertices; u++) {
+					if (!placed[u] && score[u] > 0) {
+						heap.add(((long) score[u] << 32) | u);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Add delta to the scores of the neighbours and siblings of the given
+	 * vertex, which entered (1) or left (-1) the window.
+	 */
+	private void updateScores(int v, int delta, int hubDegree, int[] score, boolean[] placed, LongMaxHeap heap) {
+		for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+			updateScore(outTargets[e], delta, score, placed, heap);
+		}
+		for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) {
+			int parent = inSources[e];
+			updateScore(parent, delta, score, placed, heap);
+			if (outOffsets[parent + 1] - outOffsets[parent] <= hubDegree) {
+				for (int f = outOffsets[parent]; f < outOffsets[parent + 1]; f++) {
+					if (outTargets[f] != v) {
+						updateScore(outTargets[f], delta, score, placed, heap);
+					}
+				}
+			}
+		}
+	}
+
+	private void updateScore(int u, int delta, int[] score, boolean[] placed, LongMaxHeap heap) {
+		if (placed[u]) {
+			return;
+		}
+		score[u] += delta;
+		if (score[u] > 0) {
+			heap.add(((long) score[u] << 32) | u);
+		}
+	}
+
+	/**
+	 * Binary max heap of longs. Entries are (score << 32 | vertex); outdated
+	 * entries are skipped when polled.
+	 */
+	private static class LongMaxHeap {
+		private long[] values = new long[1024];
+		private int size;
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public void clear() {
+			size = 0;
+		}
+
+		public void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			int i = size++;
+			while (i > 0 && values[(i - 1) / 2] < value) {
+				values[i] = values[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+			values[i] = value;
+		}
+
+		public long poll() {
+			long top = values[0];
+			long last = values[--size];
+			int i = 0;
+			while (2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && values[child + 1] > values[child]) {
+					child++;
+				}
+				if (values[child] <= last) {
+					break;
+				}
+				values[i] = values[child];
+				i = child;
+			}
+			values[i] = last;
+			return top;
+		}
+	}
+}
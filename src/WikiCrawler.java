@@ -9,12 +9,14 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.function.Predicate;
 
 /**
  * This class build a web graph of the crawled pages and have methods that can
@@ -26,7 +28,7 @@ import java.util.Queue;
 public class WikiCrawler {
 
 	private String seedUrl;
-	private HashSet<String> keywordsSet;
+	private String[] keywords; // distinct lower case key words
 	private int max;
 	private String fileName;
 	private HashSet<String> disallowedSites; // disallowed by robots.txt
@@ -35,6 +37,10 @@ public class WikiCrawler {
 	private LinkedList<String> visitedList;
 	private Queue<String> waitingQ;
 	private HashMap<String, LinkedList<String>> graph;
+	/* Maps every spelling and redirect of a page to its canonical title */
+	private TitleResolver resolver;
+	/* Where pages are fetched from: the live site or a recorded archive */
+	private PageFetcher fetcher;
 	private int requestsCount = 0; // waited for 5 seconds after every 100
 									// request
 	private int numOfEdges = 0;
@@ -52,14 +58,36 @@ public class WikiCrawler {
 	 *            file
 	 */
 	public WikiCrawler(String seedUrl, String[] keywords, int max, String fileName) {
-		this.seedUrl = seedUrl.trim();
+		this(seedUrl, keywords, max, fileName, new HttpPageFetcher());
+	}
+
+	/**
+	 * 
+	 * @param seedUrl
+	 *            relative address of the seed url
+	 * @param keywords
+	 *            contains key words that describe a topic
+	 * @param max
+	 *            representing Maximum number sites to be crawled
+	 * @param fileName
+	 *            representing name of a file–The graph will be written to this
+	 *            file
+	 * @param fetcher
+	 *            where pages are fetched from
+	 */
+	public WikiCrawler(String seedUrl, String[] keywords, int max, String fileName, PageFetcher fetcher) {
+		if (fetcher == null) {
+			throw new IllegalArgumentException("Page fetcher can not be null.");
+		}
+		this.fetcher = fetcher;
 		if (keywords == null || keywords.length == 0) {
 			throw new IllegalArgumentException("Key words can not be empty.");
 		} else {
-			keywordsSet = new HashSet<String>();
+			HashSet<String> keywordsSet = new HashSet<String>();
 			for (String s : keywords) {
-				this.keywordsSet.add(s.toLowerCase());
+				keywordsSet.add(s.toLowerCase());
 			}
+			this.keywords = keywordsSet.toArray(new String[keywordsSet.size()]);
 		}
 		if (max <= 0) {
 			throw new IllegalArgumentException("Maximum number sites to be crawled should be greater than 0.");
@@ -67,18 +95,37 @@ public class WikiCrawler {
 			this.max = max;
 		}
 		this.fileName = fileName;
-		this.disallowedSites = getDisallowedSites();
+		this.resolver = new TitleResolver();
+		resolver.loadRedirects(redirectsFileName(fileName));
+		this.disallowedSites = getDisallowedSites(fetcher);
+		requestsCount++;
 		visitedSet = new HashSet<String>();
 		visitedList = new LinkedList<String>();
 		waitingQ = new LinkedList<String>();
 		graph = new HashMap<String, LinkedList<String>>();
-		if (!(isValidPage(seedUrl) && seedUrl.startsWith("/wiki/"))) {
+		this.seedUrl = resolver.canonical(seedUrl.trim());
+		if (!(isValidPage(this.seedUrl) && this.seedUrl.startsWith("/wiki/"))) {
 			throw new IllegalArgumentException(seedUrl + " is not a valid wiki page.");
-		} else if (!isAboutTopics(seedUrl)) {
+		}
+		boolean aboutTopics = isAboutTopics(this.seedUrl);
+		if (!aboutTopics && resolver.isRedirect(this.seedUrl)) {
+			this.seedUrl = resolver.canonical(this.seedUrl);
+			aboutTopics = isValidPage(this.seedUrl) && isAboutTopics(this.seedUrl);
+		}
+		if (!aboutTopics) {
 			throw new IllegalArgumentException(seedUrl + " does not contain all keywords.");
 		}
 	}
 
+	/**
+	 * @param fileName
+	 *            name of the graph file
+	 * @return name of the file the redirects are stored in
+	 */
+	public static String redirectsFileName(String fileName) {
+		return "Redirects_" + fileName;
+	}
+
 	/**
 	 * collect max many pages. Every collected page must have all of the words
 	 * from keywords. This method construct the web graph of all collected pages
@@ -100,9 +147,11 @@ public class WikiCrawler {
 			// + requestsCount + "; visited sites: " + visitedList.size());
 			extractLinks(url);
 		}
-		outputGraph(fileName);
+		numOfEdges = outputGraph(fileName, max, visitedList, graph);
+		resolver.outputRedirects(redirectsFileName(fileName));
 		System.out.println("The graph has " + numOfEdges + " edges and my crawler program sent requests to wiki "
 				+ requestsCount + " times.");
+		System.out.println(resolver.numOfRedirects() + " redirects were resolved to their canonical pages.");
 	}
 
 	/**
@@ -113,8 +162,25 @@ public class WikiCrawler {
 	 * @return absolute address
 	 * @throws MalformedURLException
 	 */
-	private URL absoluteAddress(String url) throws MalformedURLException {
-		return new URL("https://en.wikipedia.org" + url);
+	static URL absoluteAddress(String url) throws MalformedURLException {
+		return absoluteAddress(BASE_URL, url);
+	}
+
+	/**
+	 * Convert the relative address to absolute html address on the given site
+	 * 
+	 * @param baseUrl
+	 *            address of the site, like BASE_URL
+	 * @param url
+	 *            relative address
+	 * @return absolute address
+	 * @throws MalformedURLException
+	 */
+	static URL absoluteAddress(String baseUrl, String url) throws MalformedURLException {
+		if (url.startsWith("/wiki/")) {
+			return new URL(baseUrl + "/wiki/" + TitleResolver.encodedTitle(url));
+		}
+		return new URL(baseUrl + url);
 	}
 
 	/**
@@ -125,55 +191,166 @@ public class WikiCrawler {
 	 * @return text page address
 	 * @throws MalformedURLException
 	 */
-	private URL textPageAddress(String url) throws MalformedURLException {
-		String title = url.substring(6);
-		String s = "https://en.wikipedia.org/w/index.php?title=" + title + "&action=raw";
+	static URL textPageAddress(String url) throws MalformedURLException {
+		return textPageAddress(BASE_URL, url);
+	}
+
+	/**
+	 * Convert the relative address to text page address on the given site
+	 * 
+	 * @param baseUrl
+	 *            address of the site, like BASE_URL
+	 * @param url
+	 *            relative address
+	 * @return text page address
+	 * @throws MalformedURLException
+	 */
+	static URL textPageAddress(String baseUrl, String url) throws MalformedURLException {
+		String title = TitleResolver.encodedTitle(url);
+		String s = baseUrl + "/w/index.php?title=" + title + "&action=raw";
 		return new URL(s);
 	}
 
+	/**
+	 * Open the page at the given address as UTF-8 text
+	 * 
+	 * @param fetcher
+	 * @param address
+	 * @return reader of the page
+	 * @throws IOException
+	 */
+	static BufferedReader readerOf(PageFetcher fetcher, URL address) throws IOException {
+		InputStream is = fetcher.open(address);
+		return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+	}
+
 	/**
 	 * Check whether the given link is a valid link (links contains "#" and ":"
 	 * are either links to images or links to sections of other pages; and
 	 * should not crawl any site that is disallowed by robots.txt).
 	 * 
 	 * @param url
+	 * @param disallowedSites
+	 *            disallowed by robots.txt
 	 * @return true if it's a valid page, false else
 	 */
-	private boolean isValidPage(String url) {
-		for (int i = 0; i < url.length(); i++) {
-			if (url.charAt(i) == '#' || url.charAt(i) == ':') {
-				return false;
+	static boolean isValidPage(String url, HashSet<String> disallowedSites) {
+		if (url.indexOf('#') >= 0 || url.indexOf(':') >= 0) {
+			return false;
+		}
+		return !disallowedSites.contains(url);
+	}
+
+	/**
+	 * Read the disallowed sites of a robots.txt file, both as they are written
+	 * and as normalized titles
+	 * 
+	 * @param br
+	 *            reader of robots.txt
+	 * @return the hashset
+	 * @throws IOException
+	 */
+	static HashSet<String> disallowedSitesOf(BufferedReader br) throws IOException {
+		HashSet<String> sites = new HashSet<String>();
+		String line = br.readLine();
+		while (line != null) {
+			if (line.contains("Disallow: /wiki/")) {
+				String site = line.substring(line.indexOf("/wiki/")).trim();
+				sites.add(site);
+				sites.add(TitleResolver.normalize(site));
 			}
+			line = br.readLine();
 		}
-		if (disallowedSites.contains(url)) {
-			// System.out.println(url + " is disallowed by robots.txt.");
-			return false;
+		return sites;
+	}
+
+	/**
+	 * Read the links in the actual text component of an html page, which
+	 * starts at the first paragraph
+	 * 
+	 * @param br
+	 *            reader of the html page
+	 * @return the links in the order they appear, as they are written
+	 * @throws IOException
+	 */
+	static ArrayList<String> linksOf(BufferedReader br) throws IOException {
+		ArrayList<String> links = new ArrayList<String>();
+		String line = br.readLine();
+		while (line != null && !line.contains("<p>")) {
+			line = br.readLine();
 		}
-		return true;
+		while (line != null) {
+			String[] parts = line.split("href=");
+			for (int i = 1; i < parts.length; i++) {
+				int startIndexOfLink = parts[i].indexOf('"') + 1;
+				int endIndexOfLink = parts[i].indexOf('"', startIndexOfLink + 1);
+				if (endIndexOfLink > startIndexOfLink) {
+					links.add(parts[i].substring(startIndexOfLink, endIndexOfLink).trim());
+				}
+			}
+			line = br.readLine();
+		}
+		return links;
+	}
+
+	/**
+	 * Find the key words in the given line and the lines after it, stopping
+	 * as soon as all of them are found
+	 * 
+	 * @param line
+	 *            first line of the text, or null
+	 * @param br
+	 *            reader of the rest of the text
+	 * @param keywords
+	 *            lower case key words
+	 * @return indexes of the key words found
+	 * @throws IOException
+	 */
+	static BitSet keywordsIn(String line, BufferedReader br, String[] keywords) throws IOException {
+		BitSet found = new BitSet(keywords.length);
+		while (line != null && found.cardinality() < keywords.length) {
+			String lineLowerCase = line.toLowerCase();
+			for (int k = found.nextClearBit(0); k < keywords.length; k = found.nextClearBit(k + 1)) {
+				if (lineLowerCase.contains(keywords[k])) {
+					found.set(k);
+				}
+			}
+			line = br.readLine();
+		}
+		return found;
+	}
+
+	/**
+	 * Check whether the given link is a valid link (links contains "#" and ":"
+	 * are either links to images or links to sections of other pages; and
+	 * should not crawl any site that is disallowed by robots.txt).
+	 * 
+	 * @param url
+	 * @return true if it's a valid page, false else
+	 */
+	private boolean isValidPage(String url) {
+		return isValidPage(url, disallowedSites);
 	}
 
 	/**
 	 * Read the robots.txt file and add disallowed sites to a hashset
 	 * 
+	 * @param fetcher
+	 *            where robots.txt is fetched from
 	 * @return the hashset
 	 */
-	private HashSet<String> getDisallowedSites() {
+	static HashSet<String> getDisallowedSites(PageFetcher fetcher) {
 		HashSet<String> sites = new HashSet<String>();
 		try {
-			URL robotsUrl = absoluteAddress("/robots.txt");
-			InputStream is = robotsUrl.openStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			requestsCount++;
-			String line = br.readLine();
-			while (line != null) {
-				if (line.contains("Disallow: /wiki/")) {
-					int index = line.indexOf("/wiki/");
-					// System.out.println(line.substring(index).trim());
-					sites.add(line.substring(index).trim());
-				}
-				line = br.readLine();
-			}
+			BufferedReader br = readerOf(fetcher, absoluteAddress("/robots.txt"));
+			sites = disallowedSitesOf(br);
+			br.close();
 		} catch (IOException e) {
+			if (!fetcher.isLive()) {
+				// a recorded archive will not change by waiting
+				System.err.println("Failed to get disallowed sites from robots.txt: " + e.getMessage());
+				return sites;
+			}
 			System.err.println("Failed to get disallowed sites from robots.txt. Waiting for 3 seconds...");
 			try {
 				Thread.sleep(3000);
@@ -181,11 +358,31 @@ public class WikiCrawler {
 				// TODO Auto-generated catch block
 				e1.printStackTrace();
 			}
-			return getDisallowedSites();
+			return getDisallowedSites(fetcher);
 		}
 		return sites;
 	}
 
+	/**
+	 * Wait for 5 seconds after every 100 requests to the live site. Replayed
+	 * pages are served without waiting.
+	 * 
+	 * @param requestsCount
+	 *            requests sent so far
+	 * @param fetcher
+	 */
+	static void waitForLiveSite(int requestsCount, PageFetcher fetcher) {
+		if (requestsCount % 100 == 0 && fetcher.isLive()) {
+			try {
+				System.out.println("Waiting 5 seconds after every 100 requests......");
+				Thread.sleep(5000);
+			} catch (InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * Output the disallowed sites to the file
 	 * 
@@ -195,12 +392,12 @@ public class WikiCrawler {
 		File outputFile = new File(fileName);
 		System.out.println("Writing file......");
 		try {
-			PrintWriter writer = new PrintWriter(outputFile);
+			PrintWriter writer = new PrintWriter(outputFile, StandardCharsets.UTF_8);
 			for (String s : disallowedSites) {
 				writer.append(s + "\n");
 			}
 			writer.close();
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
@@ -210,7 +407,8 @@ public class WikiCrawler {
 	 * Extract the links from actual text component of given url, while
 	 * collected pages < “max” number of pages going to collect, add non repeat
 	 * valid links that contains all keywords to visitedList and waitingQ, and
-	 * update the graph (edges).
+	 * update the graph (edges). Every link is replaced by its canonical title
+	 * first, so different spellings of a page end up as one vertex.
 	 * 
 	 * 
 	 * @param url
@@ -219,15 +417,7 @@ public class WikiCrawler {
 		HashSet<String> edgeSet = new HashSet<String>();
 		LinkedList<String> edgeList = new LinkedList<String>();
 
-		if (requestsCount % 100 == 0) {
-			try {
-				System.out.println("Waiting 5 seconds after every 100 requests......");
-				Thread.sleep(5000);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		}
+		waitForLiveSite(requestsCount, fetcher);
 		URL source = null;
 		try {
 			source = absoluteAddress(url);
@@ -236,45 +426,19 @@ public class WikiCrawler {
 			return;
 		}
 		try {
-			InputStream is = source.openStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
+			BufferedReader br = readerOf(fetcher, source);
 			requestsCount++;
-			String line = br.readLine();
-			while (!line.contains("<p>")) {
-				line = br.readLine();
-			}
-			while (line != null) {
-				String[] links = line.split("href=");
-				for (int i = 1; i < links.length; i++) {
-					int startIndexOfLink = links[i].indexOf('"') + 1;
-					int endIndexOfLink = links[i].indexOf('"', startIndexOfLink + 1);
-					String link;
-					try {
-						link = links[i].substring(startIndexOfLink, endIndexOfLink).trim();
-					} catch (StringIndexOutOfBoundsException e) {
-						// System.out.println("Could not get link from: " +
-						// links[i]);
-						continue;
-					}
-					if (!edgeSet.contains(link) && !link.equals(url)) {
-						if (visitedSet.contains(link)) {
-							edgeSet.add(link);
-							edgeList.add(link);
-						} else if (visitedSet.size() < max) {
-							if (link.startsWith("/wiki/") && isValidPage(link)) {
-								if (isAboutTopics(link)) {
-									edgeSet.add(link);
-									edgeList.add(link);
-									visitedSet.add(link);
-									visitedList.add(link);
-									waitingQ.add(link);
-								}
-							}
-						}
-
+			ArrayList<String> links = linksOf(br);
+			br.close();
+			for (String s : links) {
+				String link = resolver.canonical(s);
+				if (!edgeSet.contains(link) && !link.equals(url)) {
+					String vertex = admitLink(link);
+					if (vertex != null && !edgeSet.contains(vertex) && !vertex.equals(url)) {
+						edgeSet.add(vertex);
+						edgeList.add(vertex);
 					}
 				}
-				line = br.readLine();
 			}
 		} catch (IOException e) {
 			System.err.println("Failed to oepn url stream: " + url);
@@ -284,7 +448,68 @@ public class WikiCrawler {
 	}
 
 	/**
-	 * Check whether given url contains all key words
+	 * Decide which vertex an edge to the given canonical link should point to.
+	 * Visited pages are returned as they are; new pages are collected if they
+	 * contain all key words and fewer than max pages have been collected. A
+	 * link that turns out to be a redirect is followed to its target.
+	 * 
+	 * @param link
+	 *            canonical relative address
+	 * @return the vertex the edge points to, or null if there is no edge
+	 */
+	private String admitLink(String link) {
+		String vertex = vertexOf(link, visitedSet, max, disallowedSites, resolver, this::isAboutTopics);
+		if (vertex != null && visitedSet.add(vertex)) {
+			visitedList.add(vertex);
+			waitingQ.add(vertex);
+		}
+		return vertex;
+	}
+
+	/**
+	 * Decide which vertex an edge to the given canonical link should point to:
+	 * a visited page, or a new valid page about the topics while fewer than
+	 * max pages are visited. A link that turns out to be a redirect is
+	 * followed to its target.
+	 * 
+	 * @param link
+	 *            canonical relative address
+	 * @param visitedSet
+	 *            pages collected so far
+	 * @param max
+	 * @param disallowedSites
+	 * @param resolver
+	 * @param aboutTopics
+	 *            whether a page contains all key words; learns redirects
+	 * @return the vertex the edge points to, which is not in visitedSet if it
+	 *         is a new page, or null if there is no edge
+	 */
+	static String vertexOf(String link, HashSet<String> visitedSet, int max, HashSet<String> disallowedSites,
+			TitleResolver resolver, Predicate<String> aboutTopics) {
+		while (true) {
+			if (visitedSet.contains(link)) {
+				return link;
+			}
+			if (visitedSet.size() >= max || !link.startsWith("/wiki/") || !isValidPage(link, disallowedSites)) {
+				return null;
+			}
+			if (aboutTopics.test(link)) {
+				return link;
+			}
+			if (!resolver.isRedirect(link)) {
+				return null;
+			}
+			String target = resolver.canonical(link);
+			if (target.equals(link)) {
+				return null;
+			}
+			link = target;
+		}
+	}
+
+	/**
+	 * Check whether given url contains all key words. If the page is a
+	 * redirect, the redirect is cached and false is returned.
 	 * 
 	 * @param url
 	 * @return true if given url contains all key words; false otherwise
@@ -292,7 +517,6 @@ public class WikiCrawler {
 	 */
 	private boolean isAboutTopics(String url) {
 
-		HashSet<String> topics = (HashSet<String>) keywordsSet.clone();
 		URL source = null;
 		try {
 			source = textPageAddress(url);
@@ -302,33 +526,20 @@ public class WikiCrawler {
 			return false;
 		}
 		try {
-			if (requestsCount % 100 == 0) {
-				try {
-					System.out.println("Waiting 5 seconds after every 100 requests......");
-					Thread.sleep(5000);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-			InputStream is = source.openStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
+			waitForLiveSite(requestsCount, fetcher);
+			BufferedReader br = readerOf(fetcher, source);
 			requestsCount++;
 			String line = br.readLine();
-			while (!topics.isEmpty()) {
-				if (line == null) {
-					// System.out.printf("\n%s is NOT about the topics.\n\n",
-					// url);
-					return false;
-				}
-				String lineLowerCase = line.toLowerCase();
-				for (Iterator<String> it = topics.iterator(); it.hasNext();) {
-					String s = it.next();
-					if (lineLowerCase.contains(s)) {
-						it.remove();
-					}
-				}
-				line = br.readLine();
+			if (resolver.learnRedirect(url, line)) {
+				br.close();
+				return false;
+			}
+			BitSet found = keywordsIn(line, br, keywords);
+			br.close();
+			if (found.cardinality() < keywords.length) {
+				// System.out.printf("\n%s is NOT about the topics.\n\n",
+				// url);
+				return false;
 			}
 		} catch (IOException e) {
 			System.err.println("Failed to open url in stream: " + url+". Skipped.");
@@ -342,11 +553,20 @@ public class WikiCrawler {
 	 * Output the graph to the file with given fileName
 	 * 
 	 * @param fileName
+	 * @param max
+	 *            written on the first line
+	 * @param visitedList
+	 *            pages in the order they were collected
+	 * @param graph
+	 *            edges of every page
+	 * @return number of edges written
 	 */
-	private void outputGraph(String fileName) {
+	static int outputGraph(String fileName, int max, LinkedList<String> visitedList,
+			HashMap<String, LinkedList<String>> graph) {
+		int numOfEdges = 0;
 		File file = new File(fileName);
 		try {
-			PrintWriter writer = new PrintWriter(file);
+			PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8);
 			writer.println(max);
 			for (String s1 : visitedList) {
 				LinkedList<String> edges = graph.get(s1);
@@ -356,8 +576,9 @@ public class WikiCrawler {
 				}
 			}
 			writer.close();
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		return numOfEdges;
 	}
 }
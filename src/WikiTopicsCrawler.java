@@ -0,0 +1,20 @@
+/**
+ * Crawl the tennis graph of {@link WikiTennisCrawler} and the basketball graph
+ * of {@link MyWikiCrawler} in one session, fetching the pages they share once.
+ */
+public class WikiTopicsCrawler {
+
+	public static void main(String[] args) {
+		long startTime = System.currentTimeMillis();
+		System.out.println("WikiTopicsCrawler is running......");
+		MultiTopicCrawler.Topic[] topics = {
+				new MultiTopicCrawler.Topic("tennis", "/wiki/Tennis", new String[] { "tennis", "grand slam" }, 1000,
+						"WikiTennisGraph.txt"),
+				new MultiTopicCrawler.Topic("basketball", "/wiki/Basketball", new String[] { "basketball", "NBA" },
+						2000, "MyWikiGraph.txt") };
+		MultiTopicCrawler crawler = new MultiTopicCrawler(topics);
+		crawler.crawl();
+		long usedTime = System.currentTimeMillis() - startTime;
+		System.out.println("My crawler took nearly " + usedTime / 1000 + " seconds.");
+	}
+}
@@ -0,0 +1,77 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The dense loops written with the incubating Vector API, using the widest
+ * vectors of the processor. {@link RankKernels} loads this class by name and
+ * falls back to {@link ScalarRankKernels} when it can not, so it is kept out
+ * of src and needs its own flags:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out src/*.java src/vector/*.java
+ * java --add-modules jdk.incubator.vector -cp out WikiTennisRanker
+ * </pre>
+ *
+ * Scaling the contributions is one vector multiply and one vector add per
+ * lane group. Gathering the ranks loads the contributions of in neighbours
+ * with indexed vector loads for vertices with at least one full lane group
+ * of in edges; the remaining edges and the norm stay scalar.
+ */
+class VectorRankKernels implements DenseRankKernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public String name() {
+		return "vector (" + SPECIES.length() + " lanes)";
+	}
+
+	@Override
+	public double scaleContributions(double[] pN, double[] scaledInverseDegrees, double[] contributions) {
+		int n = pN.length;
+		int lanes = SPECIES.length();
+		int bound = SPECIES.loopBound(n);
+		DoubleVector sums = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for (; i < bound; i += lanes) {
+			DoubleVector p = DoubleVector.fromArray(SPECIES, pN, i);
+			p.mul(DoubleVector.fromArray(SPECIES, scaledInverseDegrees, i)).intoArray(contributions, i);
+			sums = sums.add(p);
+		}
+		double sum = sums.reduceLanes(VectorOperators.ADD);
+		for (; i < n; i++) {
+			contributions[i] = pN[i] * scaledInverseDegrees[i];
+			sum += pN[i];
+		}
+		return sum;
+	}
+
+	@Override
+	public double gatherRanks(int[] inOffsets, int[] inSources, double[] contributions, double defaultValue,
+			double[] pN, double[] pNPlusOne) {
+		double norm = 0;
+		int n = pN.length;
+		int lanes = SPECIES.length();
+		int start = inOffsets[0];
+		for (int v = 0; v < n; v++) {
+			int end = inOffsets[v + 1];
+			double rank = defaultValue;
+			int e = start;
+			if (end - start >= lanes) {
+				DoubleVector sums = DoubleVector.zero(SPECIES);
+				for (; e + lanes <= end; e += lanes) {
+					sums = sums.add(DoubleVector.fromArray(SPECIES, contributions, 0, inSources, e));
+				}
+				rank += sums.reduceLanes(VectorOperators.ADD);
+			}
+			for (; e < end; e++) {
+				rank += contributions[inSources[e]];
+			}
+			start = end;
+			pNPlusOne[v] = rank;
+			norm += Math.abs(rank - pN[v]);
+		}
+		return norm;
+	}
+}